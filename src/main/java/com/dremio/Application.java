@@ -1,19 +1,34 @@
 package com.dremio;
 
-import static com.dremio.utills.S3Util.getObjectSize;
-
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.dremio.benchmark.CompareRunner;
+import com.dremio.benchmark.FooterScanRunner;
+import com.dremio.benchmark.SoakRunner;
+import com.dremio.benchmark.SweepRunner;
+import com.dremio.benchmark.UploadRunner;
+import com.dremio.metrics.RequestPhaseTimer;
+import com.dremio.reader.HybridObjectReader;
+import com.dremio.reader.MemoryBudget;
 import com.dremio.reader.ObjectReader;
+import com.dremio.reader.PriorityReadExecutor;
+import com.dremio.reader.StreamingObjectReader;
+import com.dremio.reader.SyncObjectReader;
+import com.dremio.s3.EndpointPool;
+import com.dremio.s3.S3AsyncByteReader;
 import com.dremio.s3.S3AsyncByteReaderUsingSyncClient;
 import com.dremio.s3.S3Configs;
 import com.dremio.s3.connection.GetS3Client;
 import com.google.common.base.Stopwatch;
 
+import io.netty.buffer.PooledByteBufAllocator;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 
 public class Application {
@@ -29,12 +44,65 @@ public class Application {
                 logger.info("Starting async reading s3 objects using S3sync client.");
                 S3Client s3Client = GetS3Client.getSyncClient(s3Configs);
                 S3AsyncByteReaderUsingSyncClient syncClient = new S3AsyncByteReaderUsingSyncClient(s3Client, s3Configs);
-                ObjectReader objectReader = new ObjectReader(syncClient, getObjectSize(s3Configs));
-                objectReader.readFooter();
-                CompletableFuture<Void> future = objectReader.readObject();
+                ObjectReader objectReader = new ObjectReader(syncClient);
+                CompletableFuture<Void> future;
+                if (s3Configs.isStreamRead()) {
+                    ParquetMetadata footer = objectReader.readFooter();
+                    MemoryBudget budget = new MemoryBudget(s3Configs.getStreamMaxMemoryBytes());
+                    future = new StreamingObjectReader(syncClient, s3Configs.getStreamChunkBytes(), budget, PooledByteBufAllocator.DEFAULT)
+                            .read(footer, (rowGroup, column, offset, bytes, last) -> { })
+                            .thenAccept(bytesRead -> logger.info("Streamed {} bytes of {} row groups, peak {} of {} bytes of buffers held",
+                                    bytesRead, footer.getBlocks().size(), budget.getPeakBytes(), budget.getLimitBytes()));
+                } else if (s3Configs.isHybridRead()) {
+                    objectReader.readFooter();
+                    future = new HybridObjectReader(syncClient, objectReader.getObjectSize(), ObjectReader.fixedLengthToRead, 0, null,
+                            s3Configs.getHybridSampleMillis(), s3Configs.getHybridDropRatio(), s3Configs.getHybridMaxTailMillis())
+                            .readObject();
+                } else {
+                    objectReader.readFooter(s3Configs.getSpeculativePrefetchBytes());
+                    future = objectReader.readObject();
+                }
                 future.get();
+                syncClient.verifyObjectChecksum(objectReader.getObjectSize());
+                RequestPhaseTimer phaseTimer = RequestPhaseTimer.shared(s3Configs);
+                if (phaseTimer != null) {
+                    phaseTimer.logSummary();
+                }
+                ExecutorService readExecutor = S3AsyncByteReaderUsingSyncClient.defaultExecutor(s3Configs);
+                if (readExecutor instanceof PriorityReadExecutor) {
+                    ((PriorityReadExecutor) readExecutor).logSummary();
+                }
+                EndpointPool endpoints = EndpointPool.shared(s3Configs);
+                if (endpoints != null) {
+                    endpoints.logSummary();
+                }
                 logger.info("Finished reading for bucket {}, path {} took {} ms", s3Configs.getBucket(), s3Configs.getPath(),
                         watch.elapsed(TimeUnit.MILLISECONDS));
+            } else if (args[0].equalsIgnoreCase("SYNC")) {
+                final Stopwatch watch = Stopwatch.createStarted();
+                logger.info("Starting sync reading of row groups using S3async client.");
+                try (S3AsyncClient s3AsyncClient = GetS3Client.getAsyncClient(s3Configs)) {
+                    SyncObjectReader syncReader = new SyncObjectReader(s3Configs.getBucket(), s3Configs.getPath(), s3AsyncClient);
+                    ParquetMetadata footer = syncReader.readFooter(new S3AsyncByteReader(s3AsyncClient, s3Configs));
+                    long bytesRead = syncReader.readRowGroups(footer);
+                    logger.info("Finished reading {} row groups, {} bytes, for bucket {}, path {} took {} ms", footer.getBlocks().size(),
+                            bytesRead, s3Configs.getBucket(), s3Configs.getPath(), watch.elapsed(TimeUnit.MILLISECONDS));
+                }
+            } else if (args[0].equalsIgnoreCase("COMPARE")) {
+                logger.info("Starting SYNC vs ASYNC comparison for bucket {}, path {}", s3Configs.getBucket(), s3Configs.getPath());
+                new CompareRunner(s3Configs).run();
+            } else if (args[0].equalsIgnoreCase("SWEEP")) {
+                logger.info("Starting parameter sweep for bucket {}, path {}", s3Configs.getBucket(), s3Configs.getPath());
+                new SweepRunner(s3Configs).run();
+            } else if (args[0].equalsIgnoreCase("UPLOAD")) {
+                logger.info("Starting multipart upload to bucket {}, path {}", s3Configs.getBucket(), s3Configs.getPath());
+                new UploadRunner(s3Configs).run();
+            } else if (args[0].equalsIgnoreCase("SOAK")) {
+                logger.info("Starting soak for bucket {}, path {}", s3Configs.getBucket(), s3Configs.getPath());
+                new SoakRunner(s3Configs).run();
+            } else if (args[0].equalsIgnoreCase("FOOTERSCAN")) {
+                logger.info("Starting footer scan for bucket {}, prefix {}", s3Configs.getBucket(), s3Configs.getPath());
+                new FooterScanRunner(s3Configs).run();
             }
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage());
@@ -0,0 +1,93 @@
+package com.dremio.benchmark;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements of one read engine in a SYNC vs ASYNC comparison, averaged over its repetitions. Peaks are the
+ * highest seen in any repetition.
+ */
+public class CompareResult {
+
+    private static final double MB = 1024 * 1024;
+
+    private final String engine;
+    private final int repetitions;
+    private final long bytesRead;
+    private final double meanWallMs;
+    private final double throughputMBps;
+    private final double cpuMs;
+    private final double cpuCores;
+    private final int peakThreads;
+    private final double peakHeapMB;
+    private final double peakDirectMB;
+
+    public CompareResult(String engine, int repetitions, long bytesRead, long wallNanos, long cpuNanos, int peakThreads,
+                         long peakHeapBytes, long peakDirectBytes) {
+        this.engine = engine;
+        this.repetitions = repetitions;
+        this.bytesRead = bytesRead;
+        double wallSeconds = wallNanos / 1e9;
+        this.meanWallMs = toMillis(wallNanos) / repetitions;
+        this.throughputMBps = wallSeconds == 0 ? 0 : bytesRead * (double) repetitions / MB / wallSeconds;
+        this.cpuMs = toMillis(cpuNanos) / repetitions;
+        this.cpuCores = wallNanos == 0 ? 0 : (double) cpuNanos / wallNanos;
+        this.peakThreads = peakThreads;
+        this.peakHeapMB = peakHeapBytes / MB;
+        this.peakDirectMB = peakDirectBytes / MB;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public static String csvHeader() {
+        return "engine,repetitions,bytesRead,meanWallMs,throughputMBps,cpuMs,cpuCores,peakThreads,peakHeapMB,peakDirectMB";
+    }
+
+    public String toCsvRow() {
+        return String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%d,%.3f,%.3f",
+                engine, repetitions, bytesRead, meanWallMs, throughputMBps, cpuMs, cpuCores, peakThreads, peakHeapMB,
+                peakDirectMB);
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public double getMeanWallMs() {
+        return meanWallMs;
+    }
+
+    public double getThroughputMBps() {
+        return throughputMBps;
+    }
+
+    public double getCpuMs() {
+        return cpuMs;
+    }
+
+    public double getCpuCores() {
+        return cpuCores;
+    }
+
+    public int getPeakThreads() {
+        return peakThreads;
+    }
+
+    public double getPeakHeapMB() {
+        return peakHeapMB;
+    }
+
+    public double getPeakDirectMB() {
+        return peakDirectMB;
+    }
+}
@@ -0,0 +1,178 @@
+package com.dremio.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.metrics.MemorySampler;
+import com.dremio.metrics.ResourceUsage;
+import com.dremio.reader.ObjectReader;
+import com.dremio.reader.SyncObjectReader;
+import com.dremio.s3.S3AsyncByteReader;
+import com.dremio.s3.S3Configs;
+import com.dremio.s3.connection.GetS3Client;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+/**
+ * Reads one object with the SYNC and the ASYNC engine and reports them side by side: wall time, throughput,
+ * CPU time, and the peak number of threads, heap and direct memory of each.
+ * <p>
+ * Both engines read the footer and then the row groups it lists, SYNC one row group at a time with a blocking
+ * read per column, ASYNC in ranges that are all in flight at once. Both send their requests through the same S3
+ * async client and find the footer the same way, a HEAD request for the size and then a read of the end of the
+ * object, so that only the way the reads are scheduled differs. The ASYNC engine here therefore does not use the
+ * sync client on a thread pool of the ASYNC mode, nor its suffix-range footer read. Each engine runs compare.warmups
+ * unmeasured reads, then the engines take turns for compare.repetitions measured reads each, so that a
+ * change in the network over the run affects both. Reports are written to compare.output with .csv and
+ * .json extensions.
+ */
+public class CompareRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompareRunner.class);
+
+    private static final String SYNC = "SYNC";
+    private static final String ASYNC = "ASYNC";
+
+    private final S3Configs s3Configs;
+    private final int warmups;
+    private final int repetitions;
+    private final long sampleMillis;
+    private final String output;
+
+    public CompareRunner(S3Configs s3Configs) {
+        if (s3Configs.isLocal()) {
+            throw new IllegalArgumentException("The SYNC engine reads S3 objects only, compare cannot read a local file");
+        }
+        this.s3Configs = s3Configs;
+        this.warmups = Integer.getInteger("compare.warmups", 1);
+        this.repetitions = Math.max(1, Integer.getInteger("compare.repetitions", 3));
+        this.sampleMillis = Long.getLong("compare.sampleMillis", 10);
+        this.output = System.getProperty("compare.output", "compare-results");
+    }
+
+    public List<CompareResult> run() throws Exception {
+        try (S3AsyncClient asyncClient = GetS3Client.getAsyncClient(s3Configs)) {
+            for (int i = 0; i < warmups; i++) {
+                readSync(asyncClient);
+                readAsync(asyncClient);
+            }
+            final Totals sync = new Totals(SYNC);
+            final Totals async = new Totals(ASYNC);
+            for (int i = 0; i < repetitions; i++) {
+                measure(sync, () -> readSync(asyncClient));
+                measure(async, () -> readAsync(asyncClient));
+            }
+            final List<CompareResult> results = new ArrayList<>();
+            results.add(sync.result());
+            results.add(async.result());
+            logReport(results.get(0), results.get(1));
+            writeReports(results);
+            return results;
+        }
+    }
+
+    private long readSync(S3AsyncClient asyncClient) throws Exception {
+        final SyncObjectReader reader = new SyncObjectReader(s3Configs.getBucket(), s3Configs.getPath(), asyncClient);
+        return reader.readRowGroups(reader.readFooter(new S3AsyncByteReader(asyncClient, s3Configs)));
+    }
+
+    private long readAsync(S3AsyncClient asyncClient) throws Exception {
+        final long objectSize = new SyncObjectReader(s3Configs.getBucket(), s3Configs.getPath(), asyncClient).headObjectSize();
+        // a pooled buffer per range, as SYNC keeps its row groups in pooled buffers, so both hold the same bytes
+        final ObjectReader objectReader = new ObjectReader(new S3AsyncByteReader(asyncClient, s3Configs), objectSize,
+                ObjectReader.fixedLengthToRead, 0, PooledByteBufAllocator.DEFAULT);
+        final ParquetMetadata footer = objectReader.readFooter();
+        final long[] span = SyncObjectReader.rowGroupSpan(footer);
+        objectReader.readObject(span[0], span[1]).get();
+        return span[1] - span[0];
+    }
+
+    private void measure(Totals totals, Engine engine) throws Exception {
+        // start each run from a collected heap, so garbage of the other engine is not counted against it
+        System.gc();
+        final long bytesRead;
+        final ResourceUsage usage;
+        final MemorySampler sampler = MemorySampler.start(sampleMillis);
+        try {
+            final ResourceUsage start = ResourceUsage.snapshot();
+            bytesRead = engine.read();
+            usage = ResourceUsage.snapshot().since(start);
+        } finally {
+            sampler.close();
+        }
+        totals.add(bytesRead, usage, sampler);
+    }
+
+    private static void logReport(CompareResult sync, CompareResult async) {
+        logger.info(String.format("%-6s %12s %10s %10s %10s %8s %10s %10s", "engine", "bytes", "wall ms", "MB/s",
+                "cpu ms", "threads", "heap MB", "direct MB"));
+        for (CompareResult result : new CompareResult[] {sync, async}) {
+            logger.info(String.format("%-6s %12d %10.1f %10.1f %10.1f %8d %10.1f %10.1f", result.getEngine(),
+                    result.getBytesRead(), result.getMeanWallMs(), result.getThroughputMBps(), result.getCpuMs(),
+                    result.getPeakThreads(), result.getPeakHeapMB(), result.getPeakDirectMB()));
+        }
+        if (sync.getMeanWallMs() > 0 && sync.getCpuMs() > 0) {
+            logger.info(String.format("ASYNC took %.2fx the wall time and %.2fx the CPU time of SYNC",
+                    async.getMeanWallMs() / sync.getMeanWallMs(), async.getCpuMs() / sync.getCpuMs()));
+        }
+    }
+
+    private void writeReports(List<CompareResult> results) throws IOException {
+        File csv = new File(output + ".csv");
+        try (PrintWriter writer = new PrintWriter(csv, StandardCharsets.UTF_8.name())) {
+            writer.println(CompareResult.csvHeader());
+            results.forEach(result -> writer.println(result.toCsvRow()));
+        }
+        File json = new File(output + ".json");
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(json, results);
+        logger.info("Wrote comparison to {} and {}", csv.getAbsolutePath(), json.getAbsolutePath());
+    }
+
+    private interface Engine {
+        /**
+         * @return the number of bytes of row groups read
+         */
+        long read() throws Exception;
+    }
+
+    /**
+     * Sums the measured runs of one engine.
+     */
+    private final class Totals {
+        private final String engine;
+        private long bytesRead;
+        private long wallNanos;
+        private long cpuNanos;
+        private int peakThreads;
+        private long peakHeapBytes;
+        private long peakDirectBytes;
+
+        Totals(String engine) {
+            this.engine = engine;
+        }
+
+        void add(long bytes, ResourceUsage usage, MemorySampler sampler) {
+            bytesRead = bytes;
+            wallNanos += usage.getWallNanos();
+            cpuNanos += usage.getCpuNanos();
+            peakThreads = Math.max(peakThreads, sampler.getPeakThreads());
+            peakHeapBytes = Math.max(peakHeapBytes, sampler.getPeakHeapBytes());
+            peakDirectBytes = Math.max(peakDirectBytes, sampler.getPeakDirectBytes());
+        }
+
+        CompareResult result() {
+            return new CompareResult(engine, repetitions, bytesRead, wallNanos, cpuNanos, peakThreads, peakHeapBytes,
+                    peakDirectBytes);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.dremio.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.metrics.Histogram;
+import com.dremio.metrics.ResourceUsage;
+import com.dremio.reader.AsyncByteReader;
+import com.dremio.reader.FooterFilter;
+import com.dremio.reader.FooterReader;
+import com.dremio.reader.LocalAsyncByteReader;
+import com.dremio.s3.S3AsyncByteReaderUsingSyncClient;
+import com.dremio.s3.S3Configs;
+import com.dremio.s3.connection.GetS3Client;
+import com.dremio.utills.NamedThreadFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Maps;
+
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Reads the footers of all Parquet files under a prefix and writes a compact summary of each as one JSON line.
+ * <p>
+ * Keys are listed page by page while the footers of the keys already listed are fetched, with a bounded
+ * number of fetches in flight. Footers are decoded on a separate work-stealing pool, so a large footer being
+ * decoded neither holds up an I/O thread nor the next fetch. Reports files per second, the fetch latency and
+ * how busy the decode pool was.
+ * <p>
+ * Settings are taken from system properties: footerscan.concurrency (footer fetches in flight),
+ * footerscan.parseThreads, footerscan.suffix (only keys ending with it are read), footerscan.columns (only
+ * these columns are decoded and summarised, all when unset), footerscan.maxFiles (0 for no limit) and
+ * footerscan.output. Use "file" as the bucket to scan a local directory.
+ */
+public class FooterScanRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(FooterScanRunner.class);
+
+    private static final int PROGRESS_EVERY = 1000;
+
+    private final S3Configs s3Configs;
+    private final int concurrency;
+    private final int parseThreads;
+    private final String suffix;
+    private final FooterFilter filter;
+    private final long maxFiles;
+    private final String output;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Histogram latencies = new Histogram();
+
+    public FooterScanRunner(S3Configs s3Configs) {
+        this.s3Configs = s3Configs;
+        this.concurrency = Integer.getInteger("footerscan.concurrency", 64);
+        this.parseThreads = Integer.getInteger("footerscan.parseThreads", Runtime.getRuntime().availableProcessors());
+        this.suffix = System.getProperty("footerscan.suffix", ".parquet");
+        String columns = System.getProperty("footerscan.columns");
+        this.filter = columns == null ? FooterFilter.all() : FooterFilter.all().columns(Arrays.asList(columns.split(",")));
+        this.maxFiles = Long.getLong("footerscan.maxFiles", 0);
+        this.output = System.getProperty("footerscan.output", "footer-scan.jsonl");
+    }
+
+    public void run() throws Exception {
+        ExecutorService ioExecutor = Executors.newFixedThreadPool(concurrency, new NamedThreadFactory("footer-io-"));
+        ForkJoinPool parsePool = new ForkJoinPool(parseThreads);
+        File outputFile = new File(output);
+        try (S3Client s3Client = s3Configs.isLocal() ? null : GetS3Client.getSyncClient(s3Configs);
+             BufferedWriter writer = Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8);
+             Stream<Map.Entry<String, Long>> objects = list(s3Client)) {
+            Semaphore window = new Semaphore(concurrency);
+            ResourceUsage start = ResourceUsage.snapshot();
+            long issued = 0;
+            Iterator<Map.Entry<String, Long>> it = objects.iterator();
+            while (it.hasNext() && (maxFiles <= 0 || issued < maxFiles)) {
+                Map.Entry<String, Long> object = it.next();
+                window.acquire();
+                issued++;
+                try {
+                    scan(s3Client, object.getKey(), object.getValue(), ioExecutor, parsePool, writer)
+                            .whenComplete((v, e) -> window.release());
+                } catch (RuntimeException e) {
+                    // no future to release the permit, the wait for the window below would never return
+                    window.release();
+                    throw e;
+                }
+            }
+            window.acquire(concurrency);
+            ResourceUsage usage = ResourceUsage.snapshot().since(start);
+
+            double seconds = usage.getWallNanos() / 1e9;
+            logger.info("Scanned {} footers ({} failed) in {} s, {} files/s, {} CPU cores, {} steals in the decode pool",
+                    completed.get(), failed.get(), String.format("%.3f", seconds),
+                    String.format("%.1f", (completed.get() + failed.get()) / seconds),
+                    String.format("%.2f", usage.getCpuNanos() / (double) usage.getWallNanos()), parsePool.getStealCount());
+            logger.info("Footer latency: p50 {} ms, p90 {} ms, p99 {} ms, max {} ms", millis(latencies.getPercentile(50)),
+                    millis(latencies.getPercentile(90)), millis(latencies.getPercentile(99)), millis(latencies.getMax()));
+            logger.info("Wrote footer summaries to {}", outputFile.getAbsolutePath());
+        } finally {
+            ioExecutor.shutdownNow();
+            parsePool.shutdownNow();
+        }
+    }
+
+    /**
+     * Lists the objects under the configured prefix with their sizes, lazily, one page at a time.
+     */
+    private Stream<Map.Entry<String, Long>> list(S3Client s3Client) throws IOException {
+        if (s3Configs.isLocal()) {
+            return Files.walk(Paths.get(s3Configs.getPath()))
+                    .filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(suffix))
+                    .map(path -> Maps.immutableEntry(path.toString(), size(path)));
+        }
+        return s3Client.listObjectsV2Paginator(b -> b.bucket(s3Configs.getBucket()).prefix(s3Configs.getPath()))
+                .contents()
+                .stream()
+                .filter(object -> object.key().endsWith(suffix))
+                .map(object -> Maps.immutableEntry(object.key(), object.size()));
+    }
+
+    private CompletableFuture<Void> scan(S3Client s3Client, String path, long size, ExecutorService ioExecutor,
+                                         ForkJoinPool parsePool, BufferedWriter writer) {
+        final long start = System.nanoTime();
+        CompletableFuture<ParquetMetadata> footer;
+        AsyncByteReader reader = null;
+        try {
+            reader = s3Configs.isLocal()
+                    ? new LocalAsyncByteReader(Paths.get(path), ioExecutor)
+                    : new S3AsyncByteReaderUsingSyncClient(s3Client, s3Configs.withPath(path), ioExecutor);
+            footer = FooterReader.readFooterFuture(reader, size, new FooterReader.FooterRequestListener() { }, parsePool, filter);
+        } catch (IOException | RuntimeException e) {
+            // counted as a failed footer, and the reader, if it was opened, is closed below
+            footer = new CompletableFuture<>();
+            footer.completeExceptionally(e);
+        }
+        final AsyncByteReader opened = reader;
+        // the summary is built and serialised on the decode pool as well
+        return footer.thenApply(metadata -> toJson(FooterSummary.of(path, size, metadata)))
+                .handle((line, e) -> {
+                    latencies.record(System.nanoTime() - start);
+                    if (e != null) {
+                        failed.incrementAndGet();
+                        logger.warn("Unable to read the footer of {}", path, e);
+                    } else {
+                        write(writer, line);
+                        long done = completed.incrementAndGet();
+                        if (done % PROGRESS_EVERY == 0) {
+                            logger.info("Scanned {} footers", done);
+                        }
+                    }
+                    close(opened);
+                    return null;
+                });
+    }
+
+    private String toJson(FooterSummary summary) {
+        try {
+            return mapper.writeValueAsString(summary);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void write(BufferedWriter writer, String line) {
+        try {
+            synchronized (writer) {
+                writer.write(line);
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            logger.error("Unable to write footer summary", e);
+        }
+    }
+
+    private static void close(AsyncByteReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (Exception e) {
+            logger.debug("Error closing reader", e);
+        }
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,169 @@
+package com.dremio.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+
+/**
+ * Compact summary of the footer of one Parquet file: row groups, rows, and per column the sizes, value
+ * counts and statistics merged over all row groups. Serialised with Jackson as one line of the footer scan.
+ */
+public class FooterSummary {
+
+    private static final int MAX_STAT_LENGTH = 64;
+
+    private final String path;
+    private final long size;
+    private final int rowGroups;
+    private final long rows;
+    private final List<Column> columns;
+
+    private FooterSummary(String path, long size, int rowGroups, long rows, List<Column> columns) {
+        this.path = path;
+        this.size = size;
+        this.rowGroups = rowGroups;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    public static FooterSummary of(String path, long size, ParquetMetadata metadata) {
+        long rows = 0;
+        Map<String, ColumnTotals> totals = new LinkedHashMap<>();
+        for (BlockMetaData block : metadata.getBlocks()) {
+            rows += block.getRowCount();
+            for (ColumnChunkMetaData chunk : block.getColumns()) {
+                totals.computeIfAbsent(chunk.getPath().toDotString(), name -> new ColumnTotals(chunk)).add(chunk);
+            }
+        }
+        List<Column> columns = new ArrayList<>(totals.size());
+        totals.forEach((name, column) -> columns.add(column.toColumn(name)));
+        return new FooterSummary(path, size, metadata.getBlocks().size(), rows, columns);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public int getRowGroups() {
+        return rowGroups;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Totals of one column over all row groups of the file.
+     */
+    public static class Column {
+        private final String name;
+        private final String type;
+        private final long compressedBytes;
+        private final long uncompressedBytes;
+        private final long values;
+        private final Long nulls;
+        private final String min;
+        private final String max;
+
+        Column(String name, String type, long compressedBytes, long uncompressedBytes, long values, Long nulls,
+               String min, String max) {
+            this.name = name;
+            this.type = type;
+            this.compressedBytes = compressedBytes;
+            this.uncompressedBytes = uncompressedBytes;
+            this.values = values;
+            this.nulls = nulls;
+            this.min = min;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        public long getUncompressedBytes() {
+            return uncompressedBytes;
+        }
+
+        public long getValues() {
+            return values;
+        }
+
+        /**
+         * @return the null count, or null if any row group has no statistics for the column
+         */
+        public Long getNulls() {
+            return nulls;
+        }
+
+        public String getMin() {
+            return min;
+        }
+
+        public String getMax() {
+            return max;
+        }
+    }
+
+    private static final class ColumnTotals {
+        private final String type;
+        private long compressedBytes;
+        private long uncompressedBytes;
+        private long values;
+        private Statistics<?> statistics;
+        private boolean statisticsComplete = true;
+
+        ColumnTotals(ColumnChunkMetaData first) {
+            this.type = first.getPrimitiveType().getPrimitiveTypeName().name();
+        }
+
+        void add(ColumnChunkMetaData chunk) {
+            compressedBytes += chunk.getTotalSize();
+            uncompressedBytes += chunk.getTotalUncompressedSize();
+            values += chunk.getValueCount();
+            Statistics<?> chunkStatistics = chunk.getStatistics();
+            if (chunkStatistics == null || chunkStatistics.isEmpty()) {
+                statisticsComplete = false;
+            } else if (statistics == null) {
+                statistics = chunkStatistics.copy();
+            } else {
+                statistics.mergeStatistics(chunkStatistics);
+            }
+        }
+
+        Column toColumn(String name) {
+            Statistics<?> complete = statisticsComplete ? statistics : null;
+            boolean hasValues = complete != null && complete.hasNonNullValue();
+            return new Column(name, type, compressedBytes, uncompressedBytes, values,
+                    complete == null || !complete.isNumNullsSet() ? null : complete.getNumNulls(),
+                    hasValues ? truncate(complete.minAsString()) : null,
+                    hasValues ? truncate(complete.maxAsString()) : null);
+        }
+
+        private static String truncate(String value) {
+            return value.length() <= MAX_STAT_LENGTH ? value : value.substring(0, MAX_STAT_LENGTH) + "...";
+        }
+    }
+}
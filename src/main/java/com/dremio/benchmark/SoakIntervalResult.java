@@ -0,0 +1,131 @@
+package com.dremio.benchmark;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.dremio.metrics.Histogram;
+
+/**
+ * Measurements of one reporting interval of a soak run, or of the whole run.
+ * Latency is measured from the intended start of each request, service time from when it was actually sent.
+ */
+public class SoakIntervalResult {
+
+    private static final double MB = 1024 * 1024;
+
+    private final String interval;
+    private final double seconds;
+    private final long issued;
+    private final long rejected;
+    private final long completed;
+    private final long failed;
+    private final long outstanding;
+    private final double requestsPerSecond;
+    private final double throughputMBps;
+    private final double latencyP50Ms;
+    private final double latencyP90Ms;
+    private final double latencyP99Ms;
+    private final double latencyP999Ms;
+    private final double latencyMaxMs;
+    private final double serviceP50Ms;
+    private final double serviceP99Ms;
+
+    public SoakIntervalResult(String interval, long nanos, long issued, long rejected, long completed, long failed,
+                              long outstanding, long bytes, Histogram latencies, Histogram serviceTimes) {
+        this.interval = interval;
+        this.seconds = nanos / 1e9;
+        this.issued = issued;
+        this.rejected = rejected;
+        this.completed = completed;
+        this.failed = failed;
+        this.outstanding = outstanding;
+        this.requestsPerSecond = seconds == 0 ? 0 : completed / seconds;
+        this.throughputMBps = seconds == 0 ? 0 : bytes / MB / seconds;
+        this.latencyP50Ms = toMillis(latencies.getPercentile(50));
+        this.latencyP90Ms = toMillis(latencies.getPercentile(90));
+        this.latencyP99Ms = toMillis(latencies.getPercentile(99));
+        this.latencyP999Ms = toMillis(latencies.getPercentile(99.9));
+        this.latencyMaxMs = toMillis(latencies.getMax());
+        this.serviceP50Ms = toMillis(serviceTimes.getPercentile(50));
+        this.serviceP99Ms = toMillis(serviceTimes.getPercentile(99));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public static String csvHeader() {
+        return "interval,seconds,issued,rejected,completed,failed,outstanding,requestsPerSecond,throughputMBps,"
+                + "latencyP50Ms,latencyP90Ms,latencyP99Ms,latencyP999Ms,latencyMaxMs,serviceP50Ms,serviceP99Ms";
+    }
+
+    public String toCsvRow() {
+        return String.format(Locale.ROOT, "%s,%.3f,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                interval, seconds, issued, rejected, completed, failed, outstanding, requestsPerSecond, throughputMBps,
+                latencyP50Ms, latencyP90Ms, latencyP99Ms, latencyP999Ms, latencyMaxMs, serviceP50Ms, serviceP99Ms);
+    }
+
+    public String getInterval() {
+        return interval;
+    }
+
+    public double getSeconds() {
+        return seconds;
+    }
+
+    public long getIssued() {
+        return issued;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getOutstanding() {
+        return outstanding;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public double getThroughputMBps() {
+        return throughputMBps;
+    }
+
+    public double getLatencyP50Ms() {
+        return latencyP50Ms;
+    }
+
+    public double getLatencyP90Ms() {
+        return latencyP90Ms;
+    }
+
+    public double getLatencyP99Ms() {
+        return latencyP99Ms;
+    }
+
+    public double getLatencyP999Ms() {
+        return latencyP999Ms;
+    }
+
+    public double getLatencyMaxMs() {
+        return latencyMaxMs;
+    }
+
+    public double getServiceP50Ms() {
+        return serviceP50Ms;
+    }
+
+    public double getServiceP99Ms() {
+        return serviceP99Ms;
+    }
+}
@@ -0,0 +1,371 @@
+package com.dremio.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.dremio.metrics.Histogram;
+import com.dremio.reader.AsyncByteReader;
+import com.dremio.reader.CachingAsyncByteReader;
+import com.dremio.reader.FooterReader;
+import com.dremio.reader.HotRangeCache;
+import com.dremio.reader.LocalAsyncByteReader;
+import com.dremio.reader.PriorityReadExecutor;
+import com.dremio.reader.ReadPriority;
+import com.dremio.reader.SingleFlightAsyncByteReader;
+import com.dremio.s3.S3AsyncByteReaderUsingSyncClient;
+import com.dremio.s3.S3Configs;
+import com.dremio.s3.connection.GetS3Client;
+import com.dremio.utills.NamedThreadFactory;
+import com.dremio.utills.S3Util;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Issues reads at a fixed target arrival rate for a set duration, whether or not earlier reads have completed,
+ * and reports throughput and latency percentiles per interval.
+ * <p>
+ * Latency is measured from the time each read was scheduled to start rather than from when it was sent, so a
+ * stalled issuer or a backed up queue shows up in the percentiles instead of silently lowering the offered
+ * load (coordinated omission). Service time, measured from the actual send, is reported alongside.
+ * <p>
+ * Settings are taken from system properties: soak.rate (reads per second), soak.arrivals (poisson or constant),
+ * soak.durationSeconds, soak.intervalSeconds, soak.objects and soak.reads, soak.threads, soak.maxOutstanding,
+ * soak.singleFlight (share overlapping reads in flight), soak.priorities (run footer reads ahead of ranges),
+ * soak.cacheBytes and soak.cacheBlockBytes (keep hot blocks in an off-heap cache) and soak.output. soak.objects
+ * is a comma separated list of object paths in the bucket and soak.reads one of range sizes in bytes or
+ * "footer", each optionally followed by ":weight".
+ */
+public class SoakRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SoakRunner.class);
+
+    private static final String FOOTER = "footer";
+
+    private final S3Configs s3Configs;
+    private final double rate;
+    private final boolean poisson;
+    private final long durationNanos;
+    private final long intervalNanos;
+    private final WeightedChoice<String> objects;
+    private final WeightedChoice<String> reads;
+    private final int threads;
+    private final long maxOutstanding;
+    private final long drainSeconds;
+    private final boolean singleFlight;
+    private final boolean priorities;
+    private final HotRangeCache cache;
+    private final String output;
+
+    private final AtomicLong outstanding = new AtomicLong();
+    private final AtomicReference<Interval> current = new AtomicReference<>();
+
+    public SoakRunner(S3Configs s3Configs) {
+        this.s3Configs = s3Configs;
+        this.rate = Double.parseDouble(System.getProperty("soak.rate", "100"));
+        this.poisson = !"constant".equalsIgnoreCase(System.getProperty("soak.arrivals", "poisson"));
+        this.durationNanos = TimeUnit.SECONDS.toNanos(Long.getLong("soak.durationSeconds", 60));
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(Long.getLong("soak.intervalSeconds", 5));
+        this.objects = WeightedChoice.parse(System.getProperty("soak.objects", s3Configs.getPath()));
+        this.reads = WeightedChoice.parse(System.getProperty("soak.reads", "1048576"));
+        this.threads = Integer.getInteger("soak.threads", 128);
+        this.maxOutstanding = Long.getLong("soak.maxOutstanding", 10000);
+        this.drainSeconds = Long.getLong("soak.drainSeconds", 30);
+        this.singleFlight = Boolean.getBoolean("soak.singleFlight");
+        this.priorities = Boolean.getBoolean("soak.priorities");
+        long cacheBytes = Long.getLong("soak.cacheBytes", 0);
+        this.cache = cacheBytes > 0 ? new HotRangeCache(cacheBytes, Integer.getInteger("soak.cacheBlockBytes", 64 * 1024)) : null;
+        this.output = System.getProperty("soak.output", "soak-results");
+        if (rate <= 0) {
+            throw new IllegalArgumentException("soak.rate must be positive");
+        }
+    }
+
+    public List<SoakIntervalResult> run() throws Exception {
+        ExecutorService executor = priorities
+                ? new PriorityReadExecutor(threads, s3Configs.getReadAgingMillis(), "soak-read-")
+                : Executors.newFixedThreadPool(threads, new NamedThreadFactory("soak-read-"));
+        List<AutoCloseable> resources = new ArrayList<>();
+        try {
+            Map<String, AsyncByteReader> readers = new LinkedHashMap<>();
+            Map<String, Long> sizes = new LinkedHashMap<>();
+            openReaders(executor, resources, readers, sizes);
+            logger.info("Soaking {} objects at {} reads/s with {} arrivals for {} s", readers.size(), rate,
+                    poisson ? "poisson" : "constant", TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+            return soak(executor, readers, sizes);
+        } finally {
+            for (AutoCloseable resource : resources) {
+                resource.close();
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    private void openReaders(ExecutorService executor, List<AutoCloseable> resources, Map<String, AsyncByteReader> readers,
+                             Map<String, Long> sizes) throws IOException {
+        S3Client s3Client = null;
+        if (!s3Configs.isLocal()) {
+            s3Client = GetS3Client.getSyncClient(s3Configs);
+            resources.add(s3Client);
+        }
+        for (String path : objects.values()) {
+            S3Configs objectConfigs = s3Configs.withPath(path);
+            // shared reads and cached blocks are keyed by a version, so a rewritten object is not served stale bytes
+            String version;
+            if (s3Configs.isLocal()) {
+                LocalAsyncByteReader localReader = new LocalAsyncByteReader(Paths.get(path), executor);
+                resources.add(localReader);
+                readers.put(path, localReader);
+                sizes.put(path, Files.size(Paths.get(path)));
+                version = String.valueOf(Files.getLastModifiedTime(Paths.get(path)).toMillis());
+            } else {
+                readers.put(path, new S3AsyncByteReaderUsingSyncClient(s3Client, objectConfigs, executor));
+                ObjectMetadata metadata = S3Util.getObjectMetadata(objectConfigs);
+                sizes.put(path, metadata.getContentLength());
+                version = metadata.getETag();
+            }
+            if (singleFlight) {
+                readers.put(path, new SingleFlightAsyncByteReader(readers.get(path),
+                        s3Configs.getBucket() + "/" + path + "@" + version));
+            }
+            if (cache != null) {
+                readers.put(path, new CachingAsyncByteReader(readers.get(path), cache, s3Configs.getBucket() + "/" + path,
+                        sizes.get(path), version));
+            }
+        }
+    }
+
+    private List<SoakIntervalResult> soak(ExecutorService executor, Map<String, AsyncByteReader> readers, Map<String, Long> sizes) throws Exception {
+        final List<SoakIntervalResult> results = new ArrayList<>();
+        final Interval total = new Interval("total", System.nanoTime());
+        final long start = total.startNanos;
+        current.set(new Interval("1", start));
+        long nextReport = start + intervalNanos;
+        long intended = start;
+        final long end = start + durationNanos;
+
+        while (intended < end) {
+            long now = System.nanoTime();
+            while (now >= nextReport) {
+                // intervals are cut on the issuing thread so that a slow reporter can not delay the arrivals
+                results.add(rollInterval(total, nextReport, results.size() + 2));
+                nextReport += intervalNanos;
+            }
+            if (intended > now) {
+                LockSupport.parkNanos(Math.min(intended, nextReport) - now);
+                continue;
+            }
+            issue(executor, intended, readers, sizes);
+            intended += poisson ? (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / rate * 1e9) : (long) (1e9 / rate);
+        }
+
+        final long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainSeconds);
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        if (outstanding.get() > 0) {
+            logger.warn("{} reads still outstanding after draining for {} s", outstanding.get(), drainSeconds);
+        }
+        results.add(rollInterval(total, System.nanoTime(), results.size() + 2));
+        SoakIntervalResult summary = total.toResult(System.nanoTime(), outstanding.get());
+        logger.info("Soak total: {}", summary.toCsvRow());
+        if (singleFlight) {
+            SingleFlightAsyncByteReader.logSummary();
+        }
+        if (cache != null) {
+            cache.logSummary();
+        }
+        if (executor instanceof PriorityReadExecutor) {
+            ((PriorityReadExecutor) executor).logSummary();
+        }
+        results.add(summary);
+        writeReports(results);
+        return results;
+    }
+
+    private SoakIntervalResult rollInterval(Interval total, long now, int nextIndex) {
+        Interval finished = current.getAndSet(new Interval(String.valueOf(nextIndex), now));
+        SoakIntervalResult result = finished.toResult(now, outstanding.get());
+        total.add(finished);
+        logger.info("Soak interval: {}", result.toCsvRow());
+        return result;
+    }
+
+    private void issue(ExecutorService executor, long intended, Map<String, AsyncByteReader> readers, Map<String, Long> sizes) {
+        final Interval interval = current.get();
+        interval.issued.incrementAndGet();
+        if (outstanding.get() >= maxOutstanding) {
+            interval.rejected.incrementAndGet();
+            return;
+        }
+        final String path = objects.next();
+        final AsyncByteReader reader = readers.get(path);
+        final long objectSize = sizes.get(path);
+        final String read = reads.next();
+        final long sent = System.nanoTime();
+        outstanding.incrementAndGet();
+        CompletableFuture<Long> future;
+        try {
+            if (FOOTER.equalsIgnoreCase(read)) {
+                // the footer is parsed on whichever thread completes the read, which must not be the issuer
+                future = CompletableFuture.supplyAsync(() -> footer(reader, objectSize),
+                                PriorityReadExecutor.withPriority(executor, ReadPriority.METADATA))
+                        .thenCompose(footer -> footer)
+                        .thenApply(metadata -> 0L);
+            } else {
+                final int len = (int) Math.min(Long.parseLong(read), objectSize);
+                final long offset = len >= objectSize ? 0 : ThreadLocalRandom.current().nextLong(objectSize - len + 1);
+                final ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(len, len);
+                future = reader.readFully(offset, len, buf, 0)
+                        .whenComplete((v, e) -> buf.release())
+                        .thenApply(v -> (long) len);
+            }
+        } catch (Exception e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((bytes, e) -> {
+            final long done = System.nanoTime();
+            outstanding.decrementAndGet();
+            current.get().record(done - intended, done - sent, bytes, e);
+        });
+    }
+
+    private static CompletableFuture<ParquetMetadata> footer(AsyncByteReader reader, long objectSize) {
+        try {
+            return FooterReader.readFooterFuture(reader, objectSize, new FooterReader.FooterRequestListener() { });
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void writeReports(List<SoakIntervalResult> results) throws IOException {
+        File csv = new File(output + ".csv");
+        try (PrintWriter writer = new PrintWriter(csv, StandardCharsets.UTF_8.name())) {
+            writer.println(SoakIntervalResult.csvHeader());
+            results.forEach(result -> writer.println(result.toCsvRow()));
+        }
+        File json = new File(output + ".json");
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(json, results);
+        logger.info("Wrote soak results to {} and {}", csv.getAbsolutePath(), json.getAbsolutePath());
+    }
+
+    /**
+     * Counters and histograms of the reads completed within one interval.
+     */
+    private static final class Interval {
+        private final String name;
+        private final long startNanos;
+        private final AtomicLong issued = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final Histogram latencies = new Histogram();
+        private final Histogram serviceTimes = new Histogram();
+
+        Interval(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+
+        void record(long latencyNanos, long serviceNanos, Long readBytes, Throwable error) {
+            if (error != null) {
+                failed.incrementAndGet();
+            } else {
+                completed.incrementAndGet();
+                bytes.addAndGet(readBytes);
+            }
+            latencies.record(latencyNanos);
+            serviceTimes.record(serviceNanos);
+        }
+
+        void add(Interval other) {
+            issued.addAndGet(other.issued.get());
+            rejected.addAndGet(other.rejected.get());
+            completed.addAndGet(other.completed.get());
+            failed.addAndGet(other.failed.get());
+            bytes.addAndGet(other.bytes.get());
+            latencies.add(other.latencies);
+            serviceTimes.add(other.serviceTimes);
+        }
+
+        SoakIntervalResult toResult(long endNanos, long outstanding) {
+            return new SoakIntervalResult(name, endNanos - startNanos, issued.get(), rejected.get(), completed.get(),
+                    failed.get(), outstanding, bytes.get(), latencies, serviceTimes);
+        }
+    }
+
+    /**
+     * Picks values at random in proportion to their weights, parsed from "value[:weight],..." lists.
+     */
+    private static final class WeightedChoice<T> {
+        private final List<T> values;
+        private final double[] cumulativeWeights;
+
+        private WeightedChoice(List<T> values, double[] cumulativeWeights) {
+            this.values = values;
+            this.cumulativeWeights = cumulativeWeights;
+        }
+
+        static WeightedChoice<String> parse(String spec) {
+            List<String> values = new ArrayList<>();
+            List<Double> weights = new ArrayList<>();
+            for (String entry : spec.split(",")) {
+                String trimmed = entry.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                int colon = trimmed.lastIndexOf(':');
+                values.add(colon < 0 ? trimmed : trimmed.substring(0, colon));
+                weights.add(colon < 0 ? 1 : Double.parseDouble(trimmed.substring(colon + 1)));
+            }
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("Empty soak mix " + spec);
+            }
+            double[] cumulative = new double[weights.size()];
+            double sum = 0;
+            for (int i = 0; i < cumulative.length; i++) {
+                sum += weights.get(i);
+                cumulative[i] = sum;
+            }
+            return new WeightedChoice<>(values, cumulative);
+        }
+
+        List<T> values() {
+            return values;
+        }
+
+        T next() {
+            double r = ThreadLocalRandom.current().nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+            int index = Arrays.binarySearch(cumulativeWeights, r);
+            index = index < 0 ? -index - 1 : index + 1;
+            return values.get(Math.min(index, values.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.dremio.benchmark;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.dremio.metrics.Histogram;
+
+/**
+ * Measurements of one cell of a parameter sweep, averaged over its repetitions.
+ */
+public class SweepResult {
+
+    private static final double MB = 1024 * 1024;
+
+    private final int chunkSize;
+    private final int concurrency;
+    private final String executor;
+    private final String client;
+    private final boolean pooled;
+    private final int repetitions;
+    private final long objectBytes;
+    private final double meanWallMs;
+    private final double throughputMBps;
+    private final double latencyP50Ms;
+    private final double latencyP90Ms;
+    private final double latencyP99Ms;
+    private final double latencyMaxMs;
+    private final double cpuMs;
+    private final double cpuCores;
+    private final double allocationMBps;
+
+    public SweepResult(int chunkSize, int concurrency, String executor, String client, boolean pooled, int repetitions,
+                       long objectBytes, long wallNanos, long cpuNanos, long allocatedBytes, Histogram latencies) {
+        this.chunkSize = chunkSize;
+        this.concurrency = concurrency;
+        this.executor = executor;
+        this.client = client;
+        this.pooled = pooled;
+        this.repetitions = repetitions;
+        this.objectBytes = objectBytes;
+        double wallSeconds = wallNanos / 1e9;
+        this.meanWallMs = toMillis(wallNanos) / repetitions;
+        this.throughputMBps = wallSeconds == 0 ? 0 : objectBytes * (double) repetitions / MB / wallSeconds;
+        this.latencyP50Ms = toMillis(latencies.getPercentile(50));
+        this.latencyP90Ms = toMillis(latencies.getPercentile(90));
+        this.latencyP99Ms = toMillis(latencies.getPercentile(99));
+        this.latencyMaxMs = toMillis(latencies.getMax());
+        this.cpuMs = toMillis(cpuNanos) / repetitions;
+        this.cpuCores = wallNanos == 0 ? 0 : (double) cpuNanos / wallNanos;
+        this.allocationMBps = wallSeconds == 0 ? 0 : allocatedBytes / MB / wallSeconds;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public static String csvHeader() {
+        return "chunkSize,concurrency,executor,client,pooled,repetitions,objectBytes,meanWallMs,throughputMBps,"
+                + "latencyP50Ms,latencyP90Ms,latencyP99Ms,latencyMaxMs,cpuMs,cpuCores,allocationMBps";
+    }
+
+    public String toCsvRow() {
+        return String.format(Locale.ROOT, "%d,%d,%s,%s,%b,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                chunkSize, concurrency, executor, client, pooled, repetitions, objectBytes, meanWallMs, throughputMBps,
+                latencyP50Ms, latencyP90Ms, latencyP99Ms, latencyMaxMs, cpuMs, cpuCores, allocationMBps);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public String getExecutor() {
+        return executor;
+    }
+
+    public String getClient() {
+        return client;
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    public int getRepetitions() {
+        return repetitions;
+    }
+
+    public long getObjectBytes() {
+        return objectBytes;
+    }
+
+    public double getMeanWallMs() {
+        return meanWallMs;
+    }
+
+    public double getThroughputMBps() {
+        return throughputMBps;
+    }
+
+    public double getLatencyP50Ms() {
+        return latencyP50Ms;
+    }
+
+    public double getLatencyP90Ms() {
+        return latencyP90Ms;
+    }
+
+    public double getLatencyP99Ms() {
+        return latencyP99Ms;
+    }
+
+    public double getLatencyMaxMs() {
+        return latencyMaxMs;
+    }
+
+    public double getCpuMs() {
+        return cpuMs;
+    }
+
+    public double getCpuCores() {
+        return cpuCores;
+    }
+
+    public double getAllocationMBps() {
+        return allocationMBps;
+    }
+}
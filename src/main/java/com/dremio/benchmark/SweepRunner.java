@@ -0,0 +1,182 @@
+package com.dremio.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.metrics.Histogram;
+import com.dremio.metrics.ResourceUsage;
+import com.dremio.reader.AsyncByteReader;
+import com.dremio.reader.LocalAsyncByteReader;
+import com.dremio.reader.ObjectReader;
+import com.dremio.reader.TimedAsyncByteReader;
+import com.dremio.s3.LeanS3ByteReader;
+import com.dremio.s3.LeanS3Client;
+import com.dremio.s3.S3AsyncByteReader;
+import com.dremio.s3.S3AsyncByteReaderUsingSyncClient;
+import com.dremio.s3.S3Configs;
+import com.dremio.s3.connection.GetS3Client;
+import com.dremio.utills.NamedThreadFactory;
+import com.dremio.utills.S3Util;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Reads one object with every combination of chunk size, concurrency, executor, client and buffer pooling,
+ * and writes throughput, range latency percentiles, CPU and allocation rate of each combination to CSV and JSON.
+ * <p>
+ * The matrix is taken from comma separated system properties:
+ * sweep.chunkSizes, sweep.concurrency, sweep.executors (cached, fixed, forkjoin), sweep.clients (sync, async, lean)
+ * and sweep.pooling (true, false). Each cell runs sweep.warmups unmeasured reads followed by
+ * sweep.repetitions measured ones. Reports are written to sweep.output with .csv and .json extensions.
+ */
+public class SweepRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SweepRunner.class);
+
+    private final S3Configs s3Configs;
+    private final List<Integer> chunkSizes;
+    private final List<Integer> concurrencies;
+    private final List<String> executors;
+    private final List<String> clients;
+    private final List<Boolean> pooling;
+    private final int warmups;
+    private final int repetitions;
+    private final String output;
+
+    public SweepRunner(S3Configs s3Configs) {
+        this.s3Configs = s3Configs;
+        this.chunkSizes = listProperty("sweep.chunkSizes", String.valueOf(ObjectReader.fixedLengthToRead), Integer::valueOf);
+        this.concurrencies = listProperty("sweep.concurrency", "64", Integer::valueOf);
+        this.executors = listProperty("sweep.executors", "cached", String::toLowerCase);
+        this.clients = s3Configs.isLocal() ? Arrays.asList("local") : listProperty("sweep.clients", "sync", String::toLowerCase);
+        this.pooling = listProperty("sweep.pooling", "false", Boolean::valueOf);
+        this.warmups = Integer.getInteger("sweep.warmups", 1);
+        this.repetitions = Integer.getInteger("sweep.repetitions", 3);
+        this.output = System.getProperty("sweep.output", "sweep-results");
+    }
+
+    public List<SweepResult> run() throws Exception {
+        final long objectSize = s3Configs.isLocal() ? Files.size(Paths.get(s3Configs.getPath())) : S3Util.getObjectSize(s3Configs);
+        logger.info("Sweeping {} cells over {} bytes of {}", chunkSizes.size() * concurrencies.size() * executors.size()
+                * clients.size() * pooling.size(), objectSize, s3Configs.getPath());
+        List<SweepResult> results = new ArrayList<>();
+        for (int chunkSize : chunkSizes) {
+            for (int concurrency : concurrencies) {
+                for (String executor : executors) {
+                    for (String client : clients) {
+                        for (boolean pooled : pooling) {
+                            SweepResult result = runCell(objectSize, chunkSize, concurrency, executor, client, pooled);
+                            logger.info("Sweep cell: {}", result.toCsvRow());
+                            results.add(result);
+                        }
+                    }
+                }
+            }
+        }
+        writeReports(results);
+        return results;
+    }
+
+    private SweepResult runCell(long objectSize, int chunkSize, int concurrency, String executorType, String client,
+                                boolean pooled) throws Exception {
+        ExecutorService executor = newExecutor(executorType, concurrency);
+        ByteBufAllocator allocator = pooled ? PooledByteBufAllocator.DEFAULT : UnpooledByteBufAllocator.DEFAULT;
+        List<AutoCloseable> resources = new ArrayList<>();
+        try {
+            AsyncByteReader reader = newReader(client, concurrency, executor, resources);
+            for (int i = 0; i < warmups; i++) {
+                new ObjectReader(reader, objectSize, chunkSize, concurrency, allocator).readObject().get();
+            }
+            Histogram latencies = new Histogram();
+            AsyncByteReader timedReader = new TimedAsyncByteReader(reader, latencies);
+            ResourceUsage start = ResourceUsage.snapshot();
+            for (int i = 0; i < repetitions; i++) {
+                new ObjectReader(timedReader, objectSize, chunkSize, concurrency, allocator).readObject().get();
+            }
+            ResourceUsage usage = ResourceUsage.snapshot().since(start);
+            return new SweepResult(chunkSize, concurrency, executorType, client, pooled, repetitions, objectSize,
+                    usage.getWallNanos(), usage.getCpuNanos(), usage.getAllocatedBytes(), latencies);
+        } finally {
+            for (AutoCloseable resource : resources) {
+                resource.close();
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    private AsyncByteReader newReader(String client, int concurrency, ExecutorService executor,
+                                      List<AutoCloseable> resources) throws IOException {
+        switch (client) {
+            case "local":
+                LocalAsyncByteReader localReader = new LocalAsyncByteReader(Paths.get(s3Configs.getPath()), executor);
+                resources.add(localReader);
+                return localReader;
+            case "sync":
+                S3Client syncClient = GetS3Client.getSyncClient(s3Configs);
+                resources.add(syncClient);
+                return new S3AsyncByteReaderUsingSyncClient(syncClient, s3Configs, executor);
+            case "async":
+                S3AsyncClient asyncClient = GetS3Client.getAsyncClient(s3Configs, concurrency, executor);
+                resources.add(asyncClient);
+                return new S3AsyncByteReader(asyncClient, s3Configs);
+            case "lean":
+                LeanS3Client leanClient = new LeanS3Client(s3Configs, concurrency);
+                resources.add(leanClient);
+                return new LeanS3ByteReader(leanClient, s3Configs, executor);
+            default:
+                throw new IllegalArgumentException("Unknown client type " + client + ", expected sync, async or lean");
+        }
+    }
+
+    private static ExecutorService newExecutor(String type, int concurrency) {
+        switch (type) {
+            case "cached":
+                return Executors.newCachedThreadPool(new NamedThreadFactory("sweep-cached-"));
+            case "fixed":
+                return Executors.newFixedThreadPool(concurrency, new NamedThreadFactory("sweep-fixed-"));
+            case "forkjoin":
+                return new ForkJoinPool(concurrency);
+            default:
+                throw new IllegalArgumentException("Unknown executor type " + type + ", expected cached, fixed or forkjoin");
+        }
+    }
+
+    private void writeReports(List<SweepResult> results) throws IOException {
+        File csv = new File(output + ".csv");
+        try (PrintWriter writer = new PrintWriter(csv, StandardCharsets.UTF_8.name())) {
+            writer.println(SweepResult.csvHeader());
+            results.forEach(result -> writer.println(result.toCsvRow()));
+        }
+        File json = new File(output + ".json");
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(json, results);
+        logger.info("Wrote sweep results to {} and {}", csv.getAbsolutePath(), json.getAbsolutePath());
+    }
+
+    private static <T> List<T> listProperty(String name, String defaultValue, Function<String, T> parser) {
+        return Arrays.stream(System.getProperty(name, defaultValue).split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .map(parser)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,79 @@
+package com.dremio.benchmark;
+
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.metrics.Histogram;
+import com.dremio.metrics.ResourceUsage;
+import com.dremio.s3.S3Configs;
+import com.dremio.s3.S3MultipartUploader;
+import com.dremio.s3.connection.GetS3Client;
+import com.dremio.utills.NamedThreadFactory;
+import com.dremio.writer.UploadSource;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Uploads a local file, or generated bytes, to the configured bucket and path with a parallel multipart
+ * upload and reports the throughput and the latency of the UploadPart requests.
+ * <p>
+ * Settings are taken from system properties: upload.source (local file, generated bytes when unset),
+ * upload.syntheticBytes, upload.partSize (preferred part size, adjusted to the object size),
+ * upload.concurrency and upload.maxInFlightBytes.
+ */
+public class UploadRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadRunner.class);
+
+    private final S3Configs s3Configs;
+    private final String source;
+    private final long syntheticBytes;
+    private final long preferredPartSize;
+    private final int concurrency;
+    private final long maxInFlightBytes;
+
+    public UploadRunner(S3Configs s3Configs) {
+        this.s3Configs = s3Configs;
+        this.source = System.getProperty("upload.source");
+        this.syntheticBytes = Long.getLong("upload.syntheticBytes", 1L << 30);
+        this.preferredPartSize = Long.getLong("upload.partSize", 16L << 20);
+        this.concurrency = Integer.getInteger("upload.concurrency", 16);
+        this.maxInFlightBytes = Long.getLong("upload.maxInFlightBytes", 512L << 20);
+    }
+
+    public void run() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, new NamedThreadFactory("s3-upload-"));
+        try (S3Client s3Client = GetS3Client.getSyncClient(s3Configs);
+             UploadSource uploadSource = source == null ? UploadSource.synthetic(syntheticBytes) : UploadSource.file(Paths.get(source))) {
+            S3MultipartUploader uploader = new S3MultipartUploader(s3Client, s3Configs, executor, PooledByteBufAllocator.DEFAULT,
+                    concurrency, maxInFlightBytes);
+            long partSize = uploader.partSize(uploadSource.size(), preferredPartSize);
+            Histogram partLatencies = new Histogram();
+            ResourceUsage start = ResourceUsage.snapshot();
+            String eTag = uploader.upload(uploadSource, partSize, partLatencies);
+            ResourceUsage usage = ResourceUsage.snapshot().since(start);
+
+            double seconds = usage.getWallNanos() / 1e9;
+            logger.info("Uploaded {} bytes from {} to bucket {}, path {} (ETag {}) in {} s, {} GB/s, {} CPU cores",
+                    uploadSource.size(), source == null ? "generated data" : source, s3Configs.getBucket(), s3Configs.getPath(),
+                    eTag, String.format("%.3f", seconds), String.format("%.3f", uploadSource.size() / seconds / 1e9),
+                    String.format("%.2f", usage.getCpuNanos() / (double) usage.getWallNanos()));
+            logger.info("Part latency over {} parts of {} bytes: p50 {} ms, p90 {} ms, p99 {} ms, max {} ms",
+                    partLatencies.getCount(), partSize, millis(partLatencies.getPercentile(50)),
+                    millis(partLatencies.getPercentile(90)), millis(partLatencies.getPercentile(99)),
+                    millis(partLatencies.getMax()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,106 @@
+package com.dremio.metrics;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.internal.PlatformDependent;
+
+/**
+ * Samples heap and direct memory in use on a background thread while a run is going on, and reports their peaks
+ * together with the peak number of live threads.
+ * <p>
+ * Direct memory counts both the buffers the JDK allocates and those Netty allocates without a cleaner, which the
+ * JDK does not see. It is reported above what was in use when sampling started, as pooled allocators keep the
+ * memory of earlier runs. Peaks in between two samples are missed, so the interval should be well below the
+ * duration of the run.
+ */
+public class MemorySampler implements AutoCloseable {
+
+    private final long intervalMillis;
+    private final Thread thread;
+    private final long directBaseline;
+    private volatile boolean stopped;
+    private volatile long peakHeapBytes;
+    private volatile long peakDirectBytes;
+
+    private MemorySampler(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+        this.directBaseline = directBytes();
+        ManagementFactory.getThreadMXBean().resetPeakThreadCount();
+        this.thread = new Thread(this::sampleUntilStopped, "memory-sampler");
+        this.thread.setDaemon(true);
+    }
+
+    public static MemorySampler start(long intervalMillis) {
+        MemorySampler sampler = new MemorySampler(Math.max(intervalMillis, 1));
+        sampler.sample();
+        sampler.thread.start();
+        return sampler;
+    }
+
+    private void sampleUntilStopped() {
+        while (!stopped) {
+            sample();
+            try {
+                TimeUnit.MILLISECONDS.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void sample() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+        peakDirectBytes = Math.max(peakDirectBytes, directBytes() - directBaseline);
+    }
+
+    private static long directBytes() {
+        long total = 0;
+        List<BufferPoolMXBean> pools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+        for (BufferPoolMXBean pool : pools) {
+            if ("direct".equals(pool.getName())) {
+                total += pool.getMemoryUsed();
+            }
+        }
+        // -1 unless Netty allocates without a cleaner, its buffers are then JDK buffers counted above
+        long netty = PlatformDependent.usedDirectMemory();
+        return netty > 0 ? total + netty : total;
+    }
+
+    /**
+     * Stops sampling after a last sample.
+     */
+    @Override
+    public void close() {
+        stopped = true;
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sample();
+    }
+
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    public long getPeakDirectBytes() {
+        return peakDirectBytes;
+    }
+
+    /**
+     * @return the peak number of live threads since sampling started, which includes threads of an earlier run
+     * that were still alive then
+     */
+    public int getPeakThreads() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.getPeakThreadCount();
+    }
+}
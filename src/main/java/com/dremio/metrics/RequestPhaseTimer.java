@@ -0,0 +1,261 @@
+package com.dremio.metrics;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.s3.S3Configs;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+/**
+ * Breaks the latency of every S3 request of the sync client down into phases and aggregates each phase into
+ * a histogram: waiting in the reader queue, leasing a connection from the pool, DNS lookup, TCP connect,
+ * TLS handshake, time to first byte and body transfer.
+ * <p>
+ * The sync client runs the whole request on the calling thread, so the hooks are correlated with a thread
+ * local attempt that the execution interceptor opens before the request is sent. DNS, connect and TLS are
+ * only spent on new connections and are recorded by the DNS resolver and the TLS socket factory plugged into
+ * the HTTP client. The lease time comes from the metrics the SDK publishes once the call completes, and the
+ * time to first byte is what is left of the attempt after the lease and the connection setup.
+ */
+public class RequestPhaseTimer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestPhaseTimer.class);
+
+    private static volatile RequestPhaseTimer shared;
+
+    private final Histogram queueWait = new Histogram();
+    private final Histogram lease = new Histogram();
+    private final Histogram dns = new Histogram();
+    private final Histogram connect = new Histogram();
+    private final Histogram tls = new Histogram();
+    private final Histogram timeToFirstByte = new Histogram();
+    private final Histogram transfer = new Histogram();
+
+    private final ThreadLocal<List<Attempt>> attempts = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * @return the process-wide timer, or null when phase timing is disabled
+     */
+    public static RequestPhaseTimer shared(S3Configs s3Configs) {
+        if (!s3Configs.isPhaseTimingEnabled()) {
+            return null;
+        }
+        if (shared == null) {
+            synchronized (RequestPhaseTimer.class) {
+                if (shared == null) {
+                    shared = new RequestPhaseTimer();
+                }
+            }
+        }
+        return shared;
+    }
+
+    public void recordQueueWait(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    public void recordTransfer(long nanos) {
+        transfer.record(nanos);
+    }
+
+    /**
+     * @return the histograms of all phases in the order a request goes through them
+     */
+    public Map<String, Histogram> phases() {
+        Map<String, Histogram> phases = new LinkedHashMap<>();
+        phases.put("queue", queueWait);
+        phases.put("lease", lease);
+        phases.put("dns", dns);
+        phases.put("connect", connect);
+        phases.put("tls", tls);
+        phases.put("ttfb", timeToFirstByte);
+        phases.put("transfer", transfer);
+        return phases;
+    }
+
+    public void logSummary() {
+        phases().forEach((name, histogram) -> logger.info("Phase {}: {} samples, mean {} ms, p50 {} ms, p90 {} ms, p99 {} ms, max {} ms",
+                name, histogram.getCount(), millis((long) histogram.getMean()), millis(histogram.getPercentile(50)),
+                millis(histogram.getPercentile(90)), millis(histogram.getPercentile(99)), millis(histogram.getMax())));
+    }
+
+    /**
+     * Opens an attempt when the request is about to be sent and closes it once the response headers arrived.
+     */
+    public ExecutionInterceptor interceptor() {
+        return new ExecutionInterceptor() {
+            @Override
+            public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+                attempts.get().clear();
+            }
+
+            @Override
+            public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+                attempts.get().add(new Attempt(System.nanoTime()));
+            }
+
+            @Override
+            public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+                Attempt attempt = currentAttempt();
+                if (attempt != null) {
+                    attempt.headersNanos = System.nanoTime();
+                }
+            }
+        };
+    }
+
+    /**
+     * Takes the lease time of each attempt from the published call metrics and derives its time to first byte.
+     */
+    public MetricPublisher metricPublisher() {
+        return new MetricPublisher() {
+            @Override
+            public void publish(MetricCollection metrics) {
+                List<Duration> leases = new ArrayList<>();
+                collect(metrics, leases);
+                List<Attempt> threadAttempts = attempts.get();
+                for (int i = 0; i < leases.size(); i++) {
+                    long leaseNanos = leases.get(i).toNanos();
+                    lease.record(leaseNanos);
+                    if (i < threadAttempts.size() && threadAttempts.get(i).headersNanos != 0) {
+                        Attempt attempt = threadAttempts.get(i);
+                        timeToFirstByte.record(attempt.headersNanos - attempt.startNanos - leaseNanos
+                                - attempt.dnsNanos - attempt.connectNanos - attempt.tlsNanos);
+                    }
+                }
+                threadAttempts.clear();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * The system resolver, timed.
+     */
+    public DnsResolver dnsResolver() {
+        return new DnsResolver() {
+            @Override
+            public InetAddress[] resolve(String host) throws UnknownHostException {
+                final long start = System.nanoTime();
+                try {
+                    return SystemDefaultDnsResolver.INSTANCE.resolve(host);
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    dns.record(elapsed);
+                    Attempt attempt = currentAttempt();
+                    if (attempt != null) {
+                        attempt.dnsNanos += elapsed;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * A TLS socket factory with the JVM default trust store that times the TCP connect and the handshake
+     * of every new connection separately.
+     */
+    public ConnectionSocketFactory socketFactory() {
+        return new TimedTlsSocketFactory(SSLContexts.createDefault());
+    }
+
+    private Attempt currentAttempt() {
+        List<Attempt> threadAttempts = attempts.get();
+        return threadAttempts.isEmpty() ? null : threadAttempts.get(threadAttempts.size() - 1);
+    }
+
+    private static void collect(MetricCollection metrics, List<Duration> leases) {
+        leases.addAll(metrics.metricValues(HttpMetric.CONCURRENCY_ACQUIRE_DURATION));
+        metrics.children().forEach(child -> collect(child, leases));
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static final class Attempt {
+        private final long startNanos;
+        private long headersNanos;
+        private long dnsNanos;
+        private long connectNanos;
+        private long tlsNanos;
+
+        Attempt(long startNanos) {
+            this.startNanos = startNanos;
+        }
+    }
+
+    private final class TimedTlsSocketFactory extends SSLConnectionSocketFactory {
+
+        TimedTlsSocketFactory(SSLContext sslContext) {
+            super(sslContext, SSLConnectionSocketFactory.getDefaultHostnameVerifier());
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) {
+            return new TimedSocket();
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            final long start = System.nanoTime();
+            final Socket connected = super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            final long connectNanos = socket instanceof TimedSocket ? ((TimedSocket) socket).connectNanos : 0;
+            final long tlsNanos = System.nanoTime() - start - connectNanos;
+            connect.record(connectNanos);
+            tls.record(tlsNanos);
+            Attempt attempt = currentAttempt();
+            if (attempt != null) {
+                attempt.connectNanos += connectNanos;
+                attempt.tlsNanos += tlsNanos;
+            }
+            return connected;
+        }
+    }
+
+    private static final class TimedSocket extends Socket {
+        private long connectNanos;
+
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            final long start = System.nanoTime();
+            try {
+                super.connect(endpoint, timeout);
+            } finally {
+                connectNanos = System.nanoTime() - start;
+            }
+        }
+    }
+}
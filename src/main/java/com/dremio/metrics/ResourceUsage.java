@@ -0,0 +1,75 @@
+package com.dremio.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Snapshot of the CPU time and heap allocation of this process. Two snapshots taken around a run give
+ * the CPU and allocation cost of the run.
+ * <p>
+ * Allocation is summed over live threads, so bytes allocated by threads that exit in between are not counted.
+ * Both values are 0 when the JVM does not expose them.
+ */
+public class ResourceUsage {
+
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+
+    private ResourceUsage(long wallNanos, long cpuNanos, long allocatedBytes) {
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public static ResourceUsage snapshot() {
+        return new ResourceUsage(System.nanoTime(), processCpuNanos(), allocatedBytes());
+    }
+
+    /**
+     * @return the usage between the given earlier snapshot and this one
+     */
+    public ResourceUsage since(ResourceUsage start) {
+        return new ResourceUsage(wallNanos - start.wallNanos, cpuNanos - start.cpuNanos,
+                Math.max(0, allocatedBytes - start.allocatedBytes));
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0;
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+        if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+            return 0;
+        }
+        long total = 0;
+        for (long allocated : sunThreads.getThreadAllocatedBytes(sunThreads.getAllThreadIds())) {
+            if (allocated > 0) {
+                total += allocated;
+            }
+        }
+        return total;
+    }
+}
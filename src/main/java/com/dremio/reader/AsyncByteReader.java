@@ -15,7 +15,9 @@
  */
 package com.dremio.reader;
 
+import java.io.InputStream;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
@@ -32,10 +34,20 @@ public interface AsyncByteReader extends AutoCloseable {
    * @param dst The ArrowBuf to read into
    * @param dstOffset The offset to read into.
    * @param len The amount of bytes to read.
-   * @return A CompletableFuture that will be informed when the read is completed.
+   * @return A CompletableFuture that will be informed when the read is completed. Cancelling it stops the
+   * read as soon as the implementation can, and dst is not written once the read has wound down.
    */
   CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset);
 
+  /**
+   * Read data into the provided dst buffer, scheduled ahead of or behind the other reads waiting for a thread
+   * according to its priority. Readers that do not queue reads ignore the priority.
+   * @param priority The scheduling class of the read, {@link ReadPriority#BULK} for the reads without one
+   */
+  default CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset, ReadPriority priority) {
+    return readFully(offset, len, dst, dstOffset);
+  }
+
   /**
    * Read data and return as a byte array.
    * @param offset File offset to read from
@@ -43,13 +55,64 @@ public interface AsyncByteReader extends AutoCloseable {
    * @return A CompletableFuture that will be carry the byte[] result when the read is completed
    */
   default CompletableFuture<byte[]> readFully(long offset, int len) {
+    return readFully(offset, len, ReadPriority.BULK);
+  }
+
+  /**
+   * Read data at the given priority and return as a byte array.
+   */
+  default CompletableFuture<byte[]> readFully(long offset, int len, ReadPriority priority) {
+    return readSlice(offset, len, priority).thenApply((buf) -> {
+      try {
+        byte[] bytes = new byte[len];
+        buf.getBytes(buf.readerIndex(), bytes, 0, len);
+        return bytes;
+      } finally {
+        buf.release();
+      }
+    });
+  }
+
+  /**
+   * Read data into a buffer the caller releases. Readers that keep ranges in memory may return a slice of
+   * a buffer they share, so a range that is already held is not copied.
+   * @return A CompletableFuture that will carry a buffer with the len bytes readable
+   */
+  default CompletableFuture<ByteBuf> readSlice(long offset, int len, ReadPriority priority) {
     final ByteBuf buf = Unpooled.directBuffer(len);
-    CompletableFuture<Void> innerFuture = readFully(offset, len, buf, 0);
-    return innerFuture.thenApply((v) -> {
-      byte[] bytes = new byte[len];
-      buf.getBytes(0, bytes, 0, len);
-      return bytes;
-    }).whenComplete((a,b) -> buf.release());
+    CompletableFuture<Void> innerFuture = readFully(offset, len, buf, 0, priority);
+    return innerFuture.handle((v, e) -> {
+      if (e != null) {
+        buf.release();
+        throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+      }
+      return buf.writerIndex(len);
+    });
+  }
+
+  /**
+   * Read the last bytes of the object using a single suffix range request, so the object
+   * length does not need to be known up front.
+   * @param len Number of trailing bytes to read, fewer are returned if the object is shorter
+   * @return A CompletableFuture that will carry the tail bytes, the object length and the ETag
+   */
+  default CompletableFuture<ObjectTail> readTail(int len) {
+    CompletableFuture<ObjectTail> future = new CompletableFuture<>();
+    future.completeExceptionally(new UnsupportedOperationException("Suffix range reads are not supported by " + getClass().getSimpleName()));
+    return future;
+  }
+
+  /**
+   * Open a single streaming read of the given range, to be consumed incrementally. Closing the stream
+   * before its end stops the transfer instead of draining the rest of it.
+   * @param offset File offset to read from
+   * @param len Number of bytes to stream
+   * @return A CompletableFuture that will carry the stream once the response has started
+   */
+  default CompletableFuture<InputStream> openStream(long offset, long len) {
+    CompletableFuture<InputStream> future = new CompletableFuture<>();
+    future.completeExceptionally(new UnsupportedOperationException("Streaming reads are not supported by " + getClass().getSimpleName()));
+    return future;
   }
 
   @Override
@@ -9,39 +9,53 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.parquet.hadoop.metadata.BlockMetaData;
 import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 
 
 /**
  * This class implements the callable interface and is used to read an entire block
  * It takes in the details of the block and assigns a thread to read each column.
- * It combines all the data read into a single byte array which it returns.
+ * It combines the column buffers into a {@link RowGroupBuffer} without copying them, the caller has to release it.
  */
 public class BlockReader implements Callable {
+    private static final Logger logger = LoggerFactory.getLogger(BlockReader.class);
     private final String bucket;
     private final int ID;
     private final String path;
     private S3AsyncClient client;
     private BlockMetaData blockData;
-    private byte[] blockBytes;
-    private int blockSize;
-    private int blockStartingPos;
+    private long blockSize;
+    private long blockStartingPos;
+    private final ByteBufAllocator allocator;
     public BlockReader(String path, String bucket, int ID, S3AsyncClient client, BlockMetaData blockData) {
+        this(path, bucket, ID, client, blockData, PooledByteBufAllocator.DEFAULT);
+    }
+    public BlockReader(String path, String bucket, int ID, S3AsyncClient client, BlockMetaData blockData, ByteBufAllocator allocator) {
         this.path = path;
         this.bucket =  bucket;
         this.ID = ID;
         this.client  = client;
         this.blockData = blockData;
-        blockSize = (int) blockData.getTotalByteSize();
-        blockBytes = new byte[blockSize];
-        blockStartingPos = (int) blockData.getStartingPos();
+        this.allocator = allocator;
+        blockSize = blockData.getCompressedSize();
+        blockStartingPos = blockData.getStartingPos();
     }
     @Override
-    public byte [] call() throws ExecutionException, InterruptedException {
+    public RowGroupBuffer call() throws ExecutionException, InterruptedException {
+        if (blockSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Row group " + ID + " of " + blockSize + " bytes of " + path
+                    + " does not fit in one buffer, read it with the StreamingObjectReader");
+        }
 
         Instant t1 = Instant.now();
 
@@ -55,33 +69,47 @@ public class BlockReader implements Callable {
         for(ColumnChunkMetaData col:cols)
         {
             //Create an instance of the ColumnReaderClass, which implements Callable interface and returns to a future a byte array with the bytes in that column
-            ColumnReader reader = new ColumnReader(col,path,bucket,client,blockStartingPos,count++);
+            ColumnReader reader = new ColumnReader(col,path,bucket,client,blockStartingPos,count++,allocator);
             futureArrayList.add(executor.submit(reader));
         }
 
-        //retrieving the data from the futures and merging them to one global array
-
-        int destPos = 0;
-        int length = 0;
-        int totalLength = 0;
-        for( int i = 0;i<cols.size();i++)
-        {
+        //retrieving the column buffers from the futures and appending them, in order, to the row group
 
-            byte[] temp = (byte[]) futureArrayList.get(i).get();
-            destPos = (int) cols.get(i).getStartingPos();
-            length = (int) cols.get(i).getTotalSize();
-            totalLength+=length;
-            System.arraycopy(temp,0,blockBytes,destPos-blockStartingPos,length);
+        RowGroupBuffer blockBytes = new RowGroupBuffer(allocator.compositeDirectBuffer(Integer.MAX_VALUE));
+        try {
+            for( int i = 0;i<cols.size();i++)
+            {
+                blockBytes.addColumn((ByteBuf) futureArrayList.get(i).get());
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            blockBytes.release();
+            // release the columns that were read successfully but not added yet
+            for (Future future : futureArrayList) {
+                if (future.isDone() && !future.isCancelled()) {
+                    try {
+                        ByteBuf column = (ByteBuf) future.get();
+                        if (column.refCnt() > 0) {
+                            column.release();
+                        }
+                    } catch (ExecutionException ignored) {
+                        // the column reader already released its buffers
+                    }
+                }
+            }
+            executor.shutdownNow();
+            throw e;
         }
-        System.out.println("For the block with ID - " + ID + "the final length written is " + totalLength + " the actual block size is -" + blockSize);
+        logger.debug("For the block with ID - {} the final length written is {} the actual block size is - {}", ID, blockBytes.size(), blockSize);
 
         Instant t2 = Instant.now();
         Duration d = Duration.between(t1,t2);
 
+        // wait for the column threads to exit, so they are not counted as live threads of whatever runs next
         executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
 
-        System.out.println("Completed the read to block number - " + ID + " with thread ID  - " + Thread.currentThread().getId()
-        + "The time taken for this read was  - " + d.toMillis());
+        logger.debug("Completed the read to block number - {} with thread ID - {}. The time taken for this read was - {}", ID,
+                Thread.currentThread().getId(), d.toMillis());
         return blockBytes;
     }
 }
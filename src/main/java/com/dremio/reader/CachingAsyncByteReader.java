@@ -0,0 +1,248 @@
+package com.dremio.reader;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+/**
+ * Serves reads of an object from the blocks of a {@link HotRangeCache} it shares with the other readers in the
+ * process, and reads the blocks that are missing from the delegate.
+ * <p>
+ * A read with any of its blocks missing reads all of them, widened to whole blocks so they can be cached, into
+ * the destination directly when the read is already aligned and through a scratch buffer otherwise. The blocks
+ * read are then offered to the cache, which only keeps those read often enough. {@link #readSlice} returns a
+ * read-only slice of the cached blocks when all of them are cached, without copying, as the blocks are shared by
+ * every reader of the cache.
+ * <p>
+ * Blocks are cached under the name and the version of the object, so a new version of an object is never served
+ * blocks of an earlier one. Until the version is known reads go to the delegate and are not cached.
+ */
+public class CachingAsyncByteReader implements AsyncByteReader {
+
+    private static final long UNKNOWN_LENGTH = -1;
+
+    private final AsyncByteReader delegate;
+    private final HotRangeCache cache;
+    private final String object;
+    private final int blockSize;
+    // the object and its version, null until the version is known
+    private volatile String key;
+    private volatile long objectLength;
+    private volatile String eTag;
+    private volatile boolean tailRead;
+
+    /**
+     * Creates a reader that learns the length and the version of the object, its ETag, from the first tail read.
+     * @param object identifies the object, readers of the same version of an object share cached blocks
+     */
+    public CachingAsyncByteReader(AsyncByteReader delegate, HotRangeCache cache, String object) {
+        this(delegate, cache, object, UNKNOWN_LENGTH, null);
+    }
+
+    /**
+     * @param objectLength length of the object, so reads of its last block are not widened past its end, or
+     * -1 if not known; it is learned from the first tail read
+     * @param version the ETag, or anything else that changes whenever the object is written, or null if not known;
+     * it is then learned as the ETag of the first tail read
+     */
+    public CachingAsyncByteReader(AsyncByteReader delegate, HotRangeCache cache, String object, long objectLength,
+                                  String version) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.object = object;
+        this.blockSize = cache.getBlockSize();
+        this.objectLength = objectLength;
+        this.key = version == null ? null : versionedKey(object, version);
+    }
+
+    private static String versionedKey(String object, String version) {
+        return object + "@" + version;
+    }
+
+    @Override
+    public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset) {
+        return readFully(offset, len, dst, dstOffset, ReadPriority.BULK);
+    }
+
+    @Override
+    public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset, ReadPriority priority) {
+        final String key = this.key;
+        if (key == null || len <= 0 || len > Integer.MAX_VALUE - 2 * blockSize) {
+            return delegate.readFully(offset, len, dst, dstOffset, priority);
+        }
+        final ByteBuf[] blocks = lookup(key, offset, len);
+        if (blocks == null) {
+            return fetch(key, offset, len, dst, dstOffset, priority);
+        }
+        try {
+            final long firstBlock = offset / blockSize;
+            for (int i = 0; i < blocks.length; i++) {
+                final long blockStart = (firstBlock + i) * blockSize;
+                final long start = Math.max(offset, blockStart);
+                final int partLen = (int) (Math.min(offset + len, blockStart + blockSize) - start);
+                dst.setBytes(dstOffset + (int) (start - offset), blocks[i], blocks[i].readerIndex() + (int) (start - blockStart), partLen);
+            }
+        } finally {
+            release(blocks);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<ByteBuf> readSlice(long offset, int len, ReadPriority priority) {
+        final String key = this.key;
+        if (key == null || len <= 0 || len > Integer.MAX_VALUE - 2 * blockSize) {
+            return delegate.readSlice(offset, len, priority);
+        }
+        final ByteBuf[] blocks = lookup(key, offset, len);
+        if (blocks == null) {
+            final ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer(len, len);
+            return fetch(key, offset, len, buf, 0, priority).handle((v, e) -> {
+                if (e != null) {
+                    buf.release();
+                    throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+                }
+                return buf.writerIndex(len);
+            });
+        }
+        final long firstBlock = offset / blockSize;
+        // the slices share the reference count of the duplicates, releasing them releases the duplicates
+        if (blocks.length == 1) {
+            final int start = (int) (offset - firstBlock * blockSize);
+            return CompletableFuture.completedFuture(blocks[0].asReadOnly().slice(blocks[0].readerIndex() + start, len));
+        }
+        final CompositeByteBuf composite = UnpooledByteBufAllocator.DEFAULT.compositeDirectBuffer(blocks.length);
+        for (int i = 0; i < blocks.length; i++) {
+            final long blockStart = (firstBlock + i) * blockSize;
+            final long start = Math.max(offset, blockStart);
+            final int partLen = (int) (Math.min(offset + len, blockStart + blockSize) - start);
+            composite.addComponent(true, blocks[i].asReadOnly().slice(blocks[i].readerIndex() + (int) (start - blockStart), partLen));
+        }
+        return CompletableFuture.completedFuture(composite.asReadOnly());
+    }
+
+    /**
+     * Reads the first tail from the delegate, so the ETag it reports is passed on, and caches its whole blocks.
+     * Later tails are served from the cache.
+     */
+    @Override
+    public CompletableFuture<ObjectTail> readTail(int len) {
+        final long length = objectLength;
+        if (tailRead && key != null) {
+            final int tailLen = (int) Math.min(len, length);
+            final String tag = eTag;
+            return readFully(length - tailLen, tailLen, ReadPriority.METADATA)
+                    .thenApply(bytes -> new ObjectTail(bytes, length, tag));
+        }
+        return delegate.readTail(len).thenApply(tail -> {
+            objectLength = tail.getObjectLength();
+            eTag = tail.getETag();
+            if (key == null && tail.getETag() != null) {
+                key = versionedKey(object, tail.getETag());
+            }
+            tailRead = true;
+            final String key = this.key;
+            if (key == null) {
+                return tail;
+            }
+            final long tailStart = tail.getObjectLength() - tail.getBytes().length;
+            final long firstWholeBlock = (tailStart + blockSize - 1) / blockSize;
+            final ByteBuf bytes = Unpooled.wrappedBuffer(tail.getBytes());
+            for (long block = firstWholeBlock; block * blockSize < tail.getObjectLength(); block++) {
+                final long blockStart = block * blockSize;
+                cache.recordAccess(key, block);
+                cache.offer(key, block, bytes, (int) (blockStart - tailStart),
+                        (int) (Math.min(blockStart + blockSize, tail.getObjectLength()) - blockStart));
+            }
+            return tail;
+        });
+    }
+
+    @Override
+    public CompletableFuture<InputStream> openStream(long offset, long len) {
+        return delegate.openStream(offset, len);
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+
+    /**
+     * Looks up every block of the range, so each counts towards its admission even if another one is missing.
+     * @return retained duplicates of the blocks the caller releases, or null if any is missing
+     */
+    private ByteBuf[] lookup(String key, long offset, int len) {
+        final long firstBlock = offset / blockSize;
+        final long lastBlock = (offset + len - 1) / blockSize;
+        final ByteBuf[] blocks = new ByteBuf[(int) (lastBlock - firstBlock + 1)];
+        boolean missing = false;
+        for (int i = 0; i < blocks.length; i++) {
+            final long blockStart = (firstBlock + i) * blockSize;
+            final int needed = (int) (Math.min(offset + len, blockStart + blockSize) - blockStart);
+            blocks[i] = cache.get(key, firstBlock + i, needed);
+            missing |= blocks[i] == null;
+        }
+        if (missing) {
+            release(blocks);
+            return null;
+        }
+        return blocks;
+    }
+
+    private static void release(ByteBuf[] blocks) {
+        for (ByteBuf block : blocks) {
+            if (block != null) {
+                block.release();
+            }
+        }
+    }
+
+    private CompletableFuture<Void> fetch(String key, long offset, int len, ByteBuf dst, int dstOffset, ReadPriority priority) {
+        final long end = offset + len;
+        final long length = objectLength;
+        final long fetchStart = offset / blockSize * blockSize;
+        // past the end of the request only up to the known end of the object
+        final long fetchEnd = length == UNKNOWN_LENGTH ? end : Math.max(end, Math.min((end + blockSize - 1) / blockSize * blockSize, length));
+        final int fetchLen = (int) (fetchEnd - fetchStart);
+        final boolean direct = fetchStart == offset && fetchEnd == end;
+        final ByteBuf target = direct ? dst : PooledByteBufAllocator.DEFAULT.directBuffer(fetchLen, fetchLen);
+        final int targetOffset = direct ? dstOffset : 0;
+        final CompletableFuture<Void> read = delegate.readFully(fetchStart, fetchLen, target, targetOffset, priority);
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        result.whenComplete((v, e) -> {
+            if (result.isCancelled()) {
+                read.cancel(true);
+            }
+        });
+        read.whenComplete((v, e) -> {
+            try {
+                if (e == null && !result.isDone()) {
+                    if (!direct) {
+                        dst.setBytes(dstOffset, target, (int) (offset - fetchStart), len);
+                    }
+                    for (long blockStart = fetchStart; blockStart < fetchEnd; blockStart += blockSize) {
+                        cache.offer(key, blockStart / blockSize, target, targetOffset + (int) (blockStart - fetchStart),
+                                (int) (Math.min(blockStart + blockSize, fetchEnd) - blockStart));
+                    }
+                }
+            } finally {
+                if (!direct) {
+                    target.release();
+                }
+            }
+            if (e == null) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        });
+        return result;
+    }
+}
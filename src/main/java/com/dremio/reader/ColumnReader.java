@@ -6,51 +6,71 @@ import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 
 import com.dremio.utills.ReaderUtil;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 
+/**
+ * Reads a column chunk as a composite of direct buffers, one per range request, that the responses are written into.
+ * The caller owns the returned buffer and has to release it.
+ */
 public class ColumnReader implements Callable {
+    private static final int COMPONENT_SIZE = 1000000;
     private ColumnChunkMetaData columnData;
-    private byte[] columnBytes;
     private volatile int count;
     private String path;
     private String bucket;
     private S3AsyncClient client;
-    private int blockStartingPosition;
-    private int columnStartingPosition;
-    public ColumnReader(ColumnChunkMetaData columnData, String path, String bucket, S3AsyncClient client,int blockStartingPosition,int count)
+    private long blockStartingPosition;
+    private final ByteBufAllocator allocator;
+    private final CompositeByteBuf columnBytes;
+    public ColumnReader(ColumnChunkMetaData columnData, String path, String bucket, S3AsyncClient client, long blockStartingPosition, int count,
+                        ByteBufAllocator allocator)
     {
         this.columnData = columnData;
-        columnBytes = new byte[(int) columnData.getTotalSize()];
         this.path = path;
         this.bucket = bucket;
         this.client = client;
         this.count = count;
         this.blockStartingPosition = blockStartingPosition;
-        columnStartingPosition = (int) columnData.getStartingPos();
+        this.allocator = allocator;
+        // never consolidate, that would copy every component into a new buffer
+        columnBytes = allocator.compositeDirectBuffer(Integer.MAX_VALUE);
     }
     @Override
     public Object call() throws Exception {
-        int offset = (int) (columnData.getDictionaryPageOffset() != 0 ? columnData.getDictionaryPageOffset() : columnData.getFirstDataPageOffset());
-        int totalLength = (int) columnData.getTotalSize();
-        performRead(offset,totalLength,totalLength);
+        long offset = columnData.getDictionaryPageOffset() != 0 ? columnData.getDictionaryPageOffset() : columnData.getFirstDataPageOffset();
+        long totalLength = columnData.getTotalSize();
+        if (totalLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Column chunk of " + totalLength + " bytes at " + offset + " of " + path
+                    + " does not fit in one buffer, read it with the StreamingObjectReader");
+        }
+        try {
+            performRead(offset, totalLength);
+        } catch (Exception e) {
+            columnBytes.release();
+            throw e;
+        }
         return columnBytes;
     }
-    public void performRead(int offset, int lengthToRead, int totalColSize) throws Exception {
-        if(lengthToRead<=1000000)
-        {
-            ReaderUtil reader = new ReaderUtil(count,lengthToRead,offset,path,bucket,client);
-            //paste in the bytes to the appropriate position
-            byte[] temp = (byte[]) reader.call();
-            System.arraycopy(temp,0,columnBytes,offset-columnStartingPosition,lengthToRead);
-            return;
+    public void performRead(long offset, long lengthToRead) throws Exception {
+        for (long read = 0; read < lengthToRead; read += COMPONENT_SIZE) {
+            readComponent(offset + read, (int) Math.min(COMPONENT_SIZE, lengthToRead - read));
         }
-        else
-        {
-            ReaderUtil reader = new ReaderUtil(count,1000000,offset,path,bucket,client);
-            byte[] temp = (byte[]) reader.call();
-            //pasting in the bytes to the appropriate location
-            System.arraycopy(temp,0,columnBytes,offset-columnStartingPosition,1000000);
-            performRead(offset+1000000,lengthToRead-1000000,totalColSize);
+    }
+
+    /**
+     * Reads a range into a new buffer and appends it to the column, in order, without copying.
+     */
+    private void readComponent(long offset, int length) throws Exception {
+        ByteBuf component = allocator.directBuffer(length);
+        try {
+            new ReaderUtil(count, length, offset, path, bucket, client, component).call();
+        } catch (Exception e) {
+            component.release();
+            throw e;
         }
+        columnBytes.addComponent(true, component);
     }
 }
@@ -0,0 +1,104 @@
+package com.dremio.reader;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.parquet.format.converter.ParquetMetadataConverter;
+import org.apache.parquet.format.converter.ParquetMetadataConverter.MetadataFilter;
+
+/**
+ * Selects the parts of a footer that are decoded: the row groups a reader owns, and the columns it reads.
+ * <p>
+ * Row groups are selected like Parquet's own metadata filters, either by the midpoint of the row group falling
+ * into a byte range of the file, which splits a file between readers without overlap, or by the exact start
+ * offsets of the row groups. When columns are selected the footer is decoded by {@link ProjectedFooterDecoder},
+ * which skips the Thrift structs of all other column chunks instead of materialising them, so the cost of
+ * decoding a footer of a wide table is proportional to the columns read rather than to the width of the table.
+ */
+public final class FooterFilter {
+
+    private static final FooterFilter ALL = new FooterFilter(-1, -1, null, null);
+
+    private final long rangeStart;
+    private final long rangeEnd;
+    private final long[] offsets;
+    private final Set<String> columns;
+
+    private FooterFilter(long rangeStart, long rangeEnd, long[] offsets, Set<String> columns) {
+        this.rangeStart = rangeStart;
+        this.rangeEnd = rangeEnd;
+        this.offsets = offsets;
+        this.columns = columns;
+    }
+
+    /**
+     * @return a filter that decodes the whole footer
+     */
+    public static FooterFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @return this filter, keeping only the row groups whose midpoint is in [start, end)
+     */
+    public FooterFilter rowGroupsInRange(long start, long end) {
+        return new FooterFilter(start, end, null, columns);
+    }
+
+    /**
+     * @return this filter, keeping only the row groups starting at one of the given offsets
+     */
+    public FooterFilter rowGroupsStartingAt(long... startOffsets) {
+        long[] sorted = startOffsets.clone();
+        Arrays.sort(sorted);
+        return new FooterFilter(-1, -1, sorted, columns);
+    }
+
+    /**
+     * @param dotPaths paths of the leaf columns to decode, as in "a.b.c"; the schema is always decoded in full
+     * @return this filter, decoding only the column chunks of the given columns
+     */
+    public FooterFilter columns(Collection<String> dotPaths) {
+        return new FooterFilter(rangeStart, rangeEnd, offsets, Collections.unmodifiableSet(new LinkedHashSet<>(dotPaths)));
+    }
+
+    boolean isProjected() {
+        return columns != null;
+    }
+
+    boolean includesColumn(String dotPath) {
+        return columns == null || columns.contains(dotPath);
+    }
+
+    /**
+     * Same selection as the midpoint and offset filters of {@link ParquetMetadataConverter}.
+     * @param startOffset offset of the first page of the first column chunk of the row group
+     * @param compressedSize compressed size of all column chunks of the row group
+     */
+    boolean includesRowGroup(long startOffset, long compressedSize) {
+        if (offsets != null) {
+            return Arrays.binarySearch(offsets, startOffset) >= 0;
+        }
+        if (rangeEnd >= 0) {
+            long midpoint = startOffset + compressedSize / 2;
+            return midpoint >= rangeStart && midpoint < rangeEnd;
+        }
+        return true;
+    }
+
+    /**
+     * @return the equivalent filter of the Parquet converter, for footers decoded in full
+     */
+    MetadataFilter toMetadataFilter() {
+        if (offsets != null) {
+            return ParquetMetadataConverter.offsets(offsets);
+        }
+        if (rangeEnd >= 0) {
+            return ParquetMetadataConverter.range(rangeStart, rangeEnd);
+        }
+        return ParquetMetadataConverter.NO_FILTER;
+    }
+}
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.parquet.bytes.BytesUtils;
@@ -25,32 +26,74 @@ public class FooterReader {
   private static final int FOOTER_METADATA_SIZE = FOOTER_LENGTH_SIZE + ParquetFileWriter.MAGIC.length;
   private static final int MAGIC_LENGTH = ParquetFileWriter.MAGIC.length;
   private static final int MIN_FILE_SIZE = ParquetFileWriter.MAGIC.length + FOOTER_METADATA_SIZE;
+  private static final long MAX_FOOTER_LEN = 16*1024*1024;
 
   private static final ParquetMetadataConverter parquetMetadataConverter = new ParquetMetadataConverter();
 
 
   public static CompletableFuture<ParquetMetadata> readFooterFuture(AsyncByteReader reader, long knownFileLength, FooterRequestListener requestListener) throws IOException {
-    long maxFooterLen = 16*1024*1024;
+    return readFooterFuture(reader, knownFileLength, requestListener, Runnable::run);
+  }
+
+  /**
+   * Read the footer, decoding it on the given executor instead of on the thread that completes the read, so
+   * that the threads doing I/O are not held up by Thrift decoding of large footers.
+   */
+  public static CompletableFuture<ParquetMetadata> readFooterFuture(AsyncByteReader reader, long knownFileLength, FooterRequestListener requestListener,
+                                                                    Executor parseExecutor) throws IOException {
+    return readFooterFuture(reader, knownFileLength, requestListener, parseExecutor, FooterFilter.all());
+  }
+
+  /**
+   * Read the footer, decoding only the row groups and columns selected by the filter.
+   */
+  public static CompletableFuture<ParquetMetadata> readFooterFuture(AsyncByteReader reader, long knownFileLength, FooterRequestListener requestListener,
+                                                                    Executor parseExecutor, FooterFilter filter) throws IOException {
     if (knownFileLength < MIN_FILE_SIZE) {
       throw new IOException(String.format("It is not a Parquet file. File length too short. Expected at least %d bytes but only saw %d bytes.", MIN_FILE_SIZE, knownFileLength));
     }
     final int readLen = (int) Math.min(knownFileLength, fixedLengthToRead);
 
     requestListener.startInitialRequest();
-    return reader.readFully(knownFileLength - readLen, readLen)
+    return reader.readFully(knownFileLength - readLen, readLen, ReadPriority.METADATA)
+
+      .whenComplete((a, b) -> {
+        requestListener.finishInitialRequest();
+      })
+
+      .thenCompose(tailBytes -> processFooter(tailBytes, reader, knownFileLength, requestListener, MAX_FOOTER_LEN, parseExecutor, filter));
+  }
+
+  /**
+   * Read the footer without knowing the file length. The initial read is a suffix range request which also
+   * reports the object length, so opening a file costs a single round trip when the footer fits in it.
+   */
+  public static CompletableFuture<ParquetMetadata> readFooterFuture(AsyncByteReader reader, FooterRequestListener requestListener) {
+    requestListener.startInitialRequest();
+    return reader.readTail(fixedLengthToRead)
 
       .whenComplete((a, b) -> {
         requestListener.finishInitialRequest();
       })
 
-      .thenCompose(tailBytes -> processFooter(tailBytes, reader, knownFileLength, requestListener, maxFooterLen));
+      .thenCompose(tail -> {
+        requestListener.objectDiscovered(tail.getObjectLength(), tail.getETag());
+        if (tail.getObjectLength() < MIN_FILE_SIZE) {
+          CompletableFuture<ParquetMetadata> tooShort = new CompletableFuture<>();
+          tooShort.completeExceptionally(new WrapException(new IOException(String.format("It is not a Parquet file. File length too short. Expected at least %d bytes but only saw %d bytes.", MIN_FILE_SIZE, tail.getObjectLength()))));
+          return tooShort;
+        }
+        return processFooter(tail.getBytes(), reader, tail.getObjectLength(), requestListener, MAX_FOOTER_LEN, Runnable::run, FooterFilter.all());
+      });
   }
 
   private static CompletableFuture<ParquetMetadata> processFooter(final byte[] firstReadBytes,
                                                                   AsyncByteReader reader,
                                                                   long knownFileLength,
                                                                   FooterRequestListener requestListener,
-                                                                  long maxFooterLen) {
+                                                                  long maxFooterLen,
+                                                                  Executor parseExecutor,
+                                                                  FooterFilter filter) {
     CompletableFuture<ParquetMetadata> completeFooterRead = new CompletableFuture<>();
 
     try {
@@ -65,31 +108,24 @@ public class FooterReader {
       if (size <= firstReadBytes.length - FOOTER_METADATA_SIZE) {
         int start = firstReadBytes.length - (size + FOOTER_METADATA_SIZE);
         byte[] footerBytes = ArrayUtils.subarray(firstReadBytes, start, start + size);
-        ParquetMetadata parquetMetadata = parquetMetadataConverter.readParquetMetadata(new ByteArrayInputStream(footerBytes), ParquetMetadataConverter.NO_FILTER);
-        completeFooterRead.complete(parquetMetadata);
-        return completeFooterRead;
+        return CompletableFuture.supplyAsync(() -> parseFooter(footerBytes, filter), parseExecutor);
       }
 
       // if the footer is larger than our initial read, we need to read the rest.
       int origFooterRead = firstReadBytes.length - FOOTER_METADATA_SIZE;
 
       requestListener.startSecondRequest();
-      completeFooterRead = reader.readFully(knownFileLength - size - FOOTER_METADATA_SIZE, size - origFooterRead)
+      completeFooterRead = reader.readFully(knownFileLength - size - FOOTER_METADATA_SIZE, size - origFooterRead, ReadPriority.METADATA)
         .whenComplete((a,b) -> {
           requestListener.finishSecondRequest();
         })
-        .thenApply((byte[] additionalTailBytes) -> {
+        .thenApplyAsync((byte[] additionalTailBytes) -> {
           final byte[] footerBytes = new byte[size];
 
           System.arraycopy(additionalTailBytes, 0, footerBytes, 0, additionalTailBytes.length);
           System.arraycopy(firstReadBytes, 0, footerBytes, additionalTailBytes.length, origFooterRead);
-          try {
-            ParquetMetadata parquetMetadata = parquetMetadataConverter.readParquetMetadata(new ByteArrayInputStream(footerBytes), ParquetMetadataConverter.NO_FILTER);
-            return parquetMetadata;
-          } catch (IOException e) {
-            throw new WrapException(e);
-          }
-        });
+          return parseFooter(footerBytes, filter);
+        }, parseExecutor);
     } catch (IOException e) {
       completeFooterRead.completeExceptionally(new WrapException(e));
     }
@@ -97,6 +133,17 @@ public class FooterReader {
     return completeFooterRead;
   }
 
+  private static ParquetMetadata parseFooter(byte[] footerBytes, FooterFilter filter) {
+    try {
+      if (filter.isProjected()) {
+        return parquetMetadataConverter.fromParquetMetadata(ProjectedFooterDecoder.decode(footerBytes, filter));
+      }
+      return parquetMetadataConverter.readParquetMetadata(new ByteArrayInputStream(footerBytes), filter.toMetadataFilter());
+    } catch (IOException e) {
+      throw new WrapException(e);
+    }
+  }
+
   public static final class WrapException extends RuntimeException {
     final IOException ex;
 
@@ -135,5 +182,6 @@ public class FooterReader {
     default void finishInitialRequest() {}
     default void startSecondRequest() {}
     default void finishSecondRequest() {}
+    default void objectDiscovered(long objectLength, String eTag) {}
   }
 }
@@ -0,0 +1,376 @@
+package com.dremio.reader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.IllegalReferenceCountException;
+
+/**
+ * Keeps blocks of objects that are read again and again, like footers, dictionary pages and page indexes, in
+ * off-heap memory within a byte budget.
+ * <p>
+ * Blocks are looked up in a concurrent hash map, which lock stripes its writes and never locks a read, and are
+ * handed out as retained duplicates, so a hit copies nothing. Admission follows TinyLFU: every lookup counts
+ * the block in a frequency sketch, and once the budget is used up a new block only gets in if it was looked up
+ * more often than the block it would evict, picked with a CLOCK sweep. A bulk scan reads each of its blocks once,
+ * so it cannot push out metadata that is read by every query. The sketch halves its counts periodically, so
+ * blocks that stopped being read lose their standing.
+ * <p>
+ * The capacity bounds the blocks held by the cache, including a block being admitted, which is only allocated
+ * once room was made for it. Evicted blocks are released by the cache, but stay alive until the last duplicate
+ * handed out is released, so the off-heap memory in use can exceed the capacity by the blocks readers still
+ * hold. {@link #getLiveBytes()} reports it.
+ */
+public class HotRangeCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotRangeCache.class);
+
+    private final long capacityBytes;
+    private final int blockSize;
+    // blocks are freed as soon as they are evicted so they are not pooled, a pooled buffer object could be
+    // handed to another allocation while a lookup still retains it; an allocator of its own counts what is alive
+    private final UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(true);
+    private final ConcurrentHashMap<BlockKey, Entry> index = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    // admissions and evictions only, lookups never take it
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ArrayDeque<Entry> clock = new ArrayDeque<>();
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param capacityBytes most bytes of blocks held at once
+     * @param blockSize size of the aligned blocks objects are cached in
+     */
+    public HotRangeCache(long capacityBytes, int blockSize) {
+        if (capacityBytes <= 0 || blockSize <= 0) {
+            throw new IllegalArgumentException("The cache capacity and block size must be positive");
+        }
+        this.capacityBytes = capacityBytes;
+        this.blockSize = blockSize;
+        this.sketch = new FrequencySketch(Math.max(1, capacityBytes / blockSize));
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Looks up a block and counts the lookup towards admitting it.
+     * @param minLength bytes from the start of the block that must be cached for a hit
+     * @return a retained duplicate of the block the caller releases, or null on a miss
+     */
+    ByteBuf get(String object, long block, int minLength) {
+        final BlockKey key = new BlockKey(object, block);
+        sketch.increment(key.hash);
+        final Entry entry = index.get(key);
+        if (entry != null && entry.length >= minLength) {
+            try {
+                final ByteBuf duplicate = entry.buf.retainedDuplicate();
+                entry.referenced = true;
+                hits.increment();
+                return duplicate;
+            } catch (IllegalReferenceCountException e) {
+                // evicted and released since the lookup
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Counts a read of a block that did not go through {@link #get}.
+     */
+    void recordAccess(String object, long block) {
+        sketch.increment(new BlockKey(object, block).hash);
+    }
+
+    /**
+     * Offers the first bytes of a block that was just read. They are copied into the cache if admitted.
+     */
+    void offer(String object, long block, ByteBuf src, int srcIndex, int length) {
+        if (length <= 0 || length > capacityBytes) {
+            return;
+        }
+        final BlockKey key = new BlockKey(object, block);
+        final Entry existing = index.get(key);
+        if (existing != null && existing.length >= length) {
+            return;
+        }
+        final int frequency = sketch.frequency(key.hash);
+        evictionLock.lock();
+        try {
+            final Entry current = index.get(key);
+            if (current != null && current.length >= length) {
+                return;
+            }
+            final List<Entry> victims = selectVictims(current, length, frequency);
+            if (victims == null) {
+                rejected.increment();
+                return;
+            }
+            for (Entry victim : victims) {
+                remove(victim);
+                evicted.increment();
+            }
+            // a shorter copy of the block goes only once the longer one is known to get in
+            if (current != null) {
+                remove(current);
+            }
+            // allocated only once the room is made, so the copies never take the cache past its capacity
+            final ByteBuf copy = allocator.directBuffer(length, length);
+            try {
+                copy.writeBytes(src, srcIndex, length);
+            } catch (RuntimeException e) {
+                copy.release();
+                throw e;
+            }
+            final Entry entry = new Entry(key, copy, length);
+            index.put(key, entry);
+            clock.addLast(entry);
+            usedBytes += length;
+            admitted.increment();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Picks the blocks to evict to make room for a block of the given length, counting the bytes of the shorter
+     * copy it replaces as freed. Nothing is evicted yet: if a victim was looked up at least as often as the new
+     * block, the blocks picked go back on the clock and the new block is rejected. Only called with the eviction
+     * lock held.
+     * @return the blocks to evict, or null if the new block is rejected
+     */
+    private List<Entry> selectVictims(Entry replaced, int length, int frequency) {
+        final List<Entry> victims = new ArrayList<>();
+        long free = capacityBytes - usedBytes + (replaced == null ? 0 : replaced.length);
+        boolean replacedPicked = false;
+        while (free < length) {
+            final Entry victim = nextVictim();
+            if (victim != null && victim == replaced) {
+                // already counted as freed
+                replacedPicked = true;
+                continue;
+            }
+            if (victim == null || sketch.frequency(victim.key.hash) >= frequency) {
+                if (victim != null) {
+                    clock.addLast(victim);
+                }
+                clock.addAll(victims);
+                if (replacedPicked) {
+                    clock.addLast(replaced);
+                }
+                return null;
+            }
+            victims.add(victim);
+            free += victim.length;
+        }
+        return victims;
+    }
+
+    /**
+     * Sweeps the clock for a block that was not looked up since it was last passed, giving the others another
+     * round. Only called with the eviction lock held.
+     */
+    private Entry nextVictim() {
+        for (int swept = 0, limit = 2 * clock.size(); swept <= limit; swept++) {
+            final Entry entry = clock.pollFirst();
+            if (entry == null) {
+                return null;
+            }
+            if (entry.removed) {
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.addLast(entry);
+                continue;
+            }
+            return entry;
+        }
+        Entry entry;
+        while ((entry = clock.pollFirst()) != null && entry.removed) {
+            // skip the replaced blocks
+        }
+        return entry;
+    }
+
+    /**
+     * Only called with the eviction lock held. A block replaced by a longer one is left on the clock and
+     * skipped when the sweep gets to it.
+     */
+    private void remove(Entry entry) {
+        index.remove(entry.key, entry);
+        entry.removed = true;
+        usedBytes -= entry.length;
+        entry.buf.release();
+    }
+
+    public long getUsedBytes() {
+        evictionLock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    /**
+     * @return the off-heap bytes of the blocks still alive, cached or evicted and still held by a reader
+     */
+    public long getLiveBytes() {
+        return allocator.metric().usedDirectMemory();
+    }
+
+    public void logSummary() {
+        final long lookups = hits.sum() + misses.sum();
+        logger.info("Hot range cache: {} of {} bytes in {} blocks, {} bytes alive off-heap, {} block lookups ({}% hits), {} admitted, {} rejected, {} evicted",
+                getUsedBytes(), capacityBytes, index.size(), getLiveBytes(), lookups,
+                String.format("%.1f", lookups == 0 ? 0 : 100.0 * hits.sum() / lookups),
+                admitted.sum(), rejected.sum(), evicted.sum());
+    }
+
+    private static final class BlockKey {
+        private final String object;
+        private final long block;
+        private final long hash;
+
+        BlockKey(String object, long block) {
+            this.object = object;
+            this.block = block;
+            this.hash = (object.hashCode() * 31L + block) * 0x9E3779B97F4A7C15L;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BlockKey)) {
+                return false;
+            }
+            final BlockKey other = (BlockKey) o;
+            return block == other.block && object.equals(other.object);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+    private static final class Entry {
+        private final BlockKey key;
+        private final ByteBuf buf;
+        private final int length;
+        private volatile boolean referenced;
+        // guarded by the eviction lock
+        private boolean removed;
+
+        Entry(BlockKey key, ByteBuf buf, int length) {
+            this.key = key;
+            this.buf = buf;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A count-min sketch of 4 bit counters, four per key, packed sixteen to a long and updated with CAS so that
+     * concurrent lookups need no lock. After ten increments per cached block every counter is halved.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final int MAX_COUNT = 15;
+
+        private final AtomicLongArray table;
+        private final int mask;
+        private final long sampleSize;
+        private final AtomicLong additions = new AtomicLong();
+
+        FrequencySketch(long expectedEntries) {
+            final int width = (int) Math.min(1 << 30, Long.highestOneBit(Math.max(16, expectedEntries - 1)) << 1);
+            this.table = new AtomicLongArray(width);
+            this.mask = width - 1;
+            this.sampleSize = 10L * expectedEntries;
+        }
+
+        int frequency(long hash) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) {
+                final long spread = spread(hash, i);
+                final long value = table.get(index(spread));
+                frequency = Math.min(frequency, (int) ((value >>> shift(spread)) & MAX_COUNT));
+            }
+            return frequency;
+        }
+
+        void increment(long hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                final long spread = spread(hash, i);
+                added |= incrementAt(index(spread), shift(spread));
+            }
+            if (added && additions.incrementAndGet() >= sampleSize) {
+                reset();
+            }
+        }
+
+        private boolean incrementAt(int index, int shift) {
+            while (true) {
+                final long value = table.get(index);
+                if (((value >>> shift) & MAX_COUNT) == MAX_COUNT) {
+                    return false;
+                }
+                if (table.compareAndSet(index, value, value + (1L << shift))) {
+                    return true;
+                }
+            }
+        }
+
+        private synchronized void reset() {
+            // another thread may have halved the counts while this one waited
+            if (additions.get() < sampleSize) {
+                return;
+            }
+            for (int i = 0; i < table.length(); i++) {
+                long value;
+                do {
+                    value = table.get(i);
+                } while (!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+            }
+            additions.set(additions.get() / 2);
+        }
+
+        private static long spread(long hash, int i) {
+            long x = (hash + SEEDS[i]) * SEEDS[i];
+            return x ^ (x >>> 29);
+        }
+
+        private int index(long spread) {
+            return (int) (spread >>> 32) & mask;
+        }
+
+        private static int shift(long spread) {
+            return (int) (spread & 15) << 2;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.dremio.reader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.utills.NamedThreadFactory;
+import com.google.common.base.Stopwatch;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Reads an object with a single streaming GET and hands the rest of it to parallel range reads when the
+ * stream slows down, or when the bytes left would take too long at the rate of the stream.
+ * <p>
+ * A fast stream reads the whole object with one request instead of paying the overhead of one request per
+ * chunk. The stream is sampled periodically, and once it falls below a fraction of its peak rate or its tail
+ * is too long, the bytes past the next chunk boundary are stolen from it and read by an {@link ObjectReader}.
+ * The stream claims at most one buffer ahead under a lock and the split moves its end past that claim, so
+ * the stream and the range reads never overlap. If the stream fails, the bytes it did not read are read as
+ * ranges as well.
+ */
+public class HybridObjectReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(HybridObjectReader.class);
+
+    private static final int STREAM_BUFFER_SIZE = 256 * 1024;
+    private static final ExecutorService streamThreads = Executors.newCachedThreadPool(new NamedThreadFactory("hybrid-stream-"));
+    private static final ScheduledExecutorService sampler =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("hybrid-sampler-"));
+
+    private final AsyncByteReader asyncByteReader;
+    private final long objectSize;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final ByteBufAllocator allocator;
+    private final long sampleMillis;
+    private final double dropRatio;
+    private final long maxTailMillis;
+
+    /**
+     * @param chunkSize size of each range read once the stream is split
+     * @param maxInFlight maximum number of range reads in flight, 0 issues all of them at once
+     * @param allocator allocator for the read buffers, null for unpooled buffers
+     * @param sampleMillis interval at which the stream rate is sampled
+     * @param dropRatio the stream is split when its rate falls below this fraction of its peak rate
+     * @param maxTailMillis the stream is split when the bytes left would take longer than this at its current rate
+     */
+    public HybridObjectReader(AsyncByteReader asyncByteReader, long objectSize, int chunkSize, int maxInFlight,
+                              ByteBufAllocator allocator, long sampleMillis, double dropRatio, long maxTailMillis) {
+        this.asyncByteReader = asyncByteReader;
+        this.objectSize = objectSize;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+        this.allocator = allocator;
+        this.sampleMillis = sampleMillis;
+        this.dropRatio = dropRatio;
+        this.maxTailMillis = maxTailMillis;
+    }
+
+    public CompletableFuture<Void> readObject() {
+        return new Transfer().start();
+    }
+
+    /**
+     * State of a single read of the object.
+     */
+    private final class Transfer {
+        private final Object lock = new Object();
+        // written by the stream thread only
+        private volatile long position;
+        // guarded by lock
+        private long claimedEnd;
+        private long limit = objectSize;
+
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final List<CompletableFuture<Void>> splits = new ArrayList<>();
+        // the stream plus every split that has not completed yet
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final Stopwatch watch = Stopwatch.createStarted();
+        private volatile InputStream stream;
+        private volatile ScheduledFuture<?> sampling;
+        private volatile long splitBytes;
+
+        // only touched by the sampler thread
+        private long lastPosition;
+        private long lastSampleNanos = System.nanoTime();
+        private double peakRate;
+
+        CompletableFuture<Void> start() {
+            result.whenComplete((v, e) -> {
+                if (result.isCancelled()) {
+                    abort();
+                }
+            });
+            asyncByteReader.openStream(0, objectSize).whenComplete((in, e) -> {
+                if (e != null) {
+                    logger.warn("Unable to open the stream, reading the whole object with range reads", e);
+                    streamFinished();
+                    return;
+                }
+                stream = in;
+                if (result.isDone()) {
+                    closeStream();
+                    return;
+                }
+                streamThreads.execute(this::consume);
+            });
+            sampling = sampler.scheduleAtFixedRate(this::sample, sampleMillis, sampleMillis, TimeUnit.MILLISECONDS);
+            return result;
+        }
+
+        private void consume() {
+            final ByteBuf buf = allocator == null ? Unpooled.directBuffer(STREAM_BUFFER_SIZE) : allocator.directBuffer(STREAM_BUFFER_SIZE);
+            try {
+                while (!result.isDone()) {
+                    final int len;
+                    synchronized (lock) {
+                        if (position >= limit) {
+                            break;
+                        }
+                        claimedEnd = Math.min(position + STREAM_BUFFER_SIZE, limit);
+                        len = (int) (claimedEnd - position);
+                    }
+                    buf.clear();
+                    while (buf.writerIndex() < len) {
+                        if (buf.writeBytes(stream, len - buf.writerIndex()) < 0) {
+                            throw new EOFException("Stream ended at offset " + position + " of " + objectSize);
+                        }
+                        position = claimedEnd - len + buf.writerIndex();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!result.isDone()) {
+                    logger.warn("Stream failed at offset {}, reading the rest with range reads", position, e);
+                }
+            } finally {
+                buf.release();
+                closeStream();
+            }
+            streamFinished();
+        }
+
+        private void sample() {
+            if (result.isDone()) {
+                stopSampling();
+                return;
+            }
+            final long now = System.nanoTime();
+            final long current = position;
+            if (current == 0) {
+                // still waiting for the first byte
+                lastSampleNanos = now;
+                return;
+            }
+            final double rate = (current - lastPosition) * 1e9 / (now - lastSampleNanos);
+            lastPosition = current;
+            lastSampleNanos = now;
+            peakRate = Math.max(peakRate, rate);
+            final long remaining;
+            synchronized (lock) {
+                remaining = limit - claimedEnd;
+            }
+            if (remaining <= chunkSize) {
+                // too little left to be worth splitting
+                stopSampling();
+                return;
+            }
+            final boolean dropped = rate < dropRatio * peakRate;
+            final boolean longTail = rate <= 0 || remaining * 1000 / rate > maxTailMillis;
+            if (dropped || longTail) {
+                logger.info("Splitting stream at offset {}, {} bytes left at {} MB/s, peak {} MB/s", current, remaining,
+                        (long) (rate / (1 << 20)), (long) (peakRate / (1 << 20)));
+                stopSampling();
+                split(false);
+            }
+        }
+
+        /**
+         * Moves the end of the stream back and reads the bytes after it with range reads.
+         * @param streamDone true once the stream has stopped, so the split starts right at its position
+         */
+        private void split(boolean streamDone) {
+            final long from;
+            final long to;
+            synchronized (lock) {
+                from = streamDone ? position : Math.min(alignUp(claimedEnd), limit);
+                to = limit;
+                if (from >= to) {
+                    return;
+                }
+                // counted before the stream can see its new end, so that it cannot complete the read first
+                pending.incrementAndGet();
+                splitBytes += to - from;
+                limit = from;
+            }
+            final CompletableFuture<Void> ranges = new ObjectReader(asyncByteReader, objectSize, chunkSize, maxInFlight, allocator)
+                    .readObject(from, to);
+            synchronized (splits) {
+                splits.add(ranges);
+            }
+            if (result.isDone()) {
+                ranges.cancel(true);
+            }
+            ranges.whenComplete((v, e) -> {
+                if (e != null) {
+                    fail(e);
+                } else {
+                    finished();
+                }
+            });
+        }
+
+        private void streamFinished() {
+            if (!result.isDone()) {
+                // nothing to do if the stream read everything up to its limit
+                split(true);
+            }
+            finished();
+        }
+
+        private void finished() {
+            if (pending.decrementAndGet() == 0 && result.complete(null)) {
+                stopSampling();
+                logger.info("Read {} bytes with the stream and {} bytes with range reads, took {} ms", objectSize - splitBytes,
+                        splitBytes, watch.elapsed(TimeUnit.MILLISECONDS));
+            }
+        }
+
+        private void fail(Throwable e) {
+            if (result.completeExceptionally(e)) {
+                abort();
+            }
+        }
+
+        private void abort() {
+            stopSampling();
+            closeStream();
+            final List<CompletableFuture<Void>> toCancel;
+            synchronized (splits) {
+                toCancel = new ArrayList<>(splits);
+            }
+            toCancel.forEach(f -> f.cancel(true));
+        }
+
+        private void closeStream() {
+            final InputStream in = stream;
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    logger.debug("Error closing stream", e);
+                }
+            }
+        }
+
+        private void stopSampling() {
+            final ScheduledFuture<?> s = sampling;
+            if (s != null) {
+                s.cancel(false);
+            }
+        }
+
+        private long alignUp(long offset) {
+            return (offset + chunkSize - 1) / chunkSize * chunkSize;
+        }
+    }
+}
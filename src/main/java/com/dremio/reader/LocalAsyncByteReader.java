@@ -0,0 +1,134 @@
+package com.dremio.reader;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Reads a local file with positional reads on the given executor. Used to benchmark the read path
+ * without the network, and as a stand-in for S3 objects.
+ */
+public class LocalAsyncByteReader implements AsyncByteReader {
+
+    private final FileChannel channel;
+    private final ExecutorService executor;
+
+    public LocalAsyncByteReader(Path path, ExecutorService executor) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset) {
+        return readFully(offset, len, dst, dstOffset, ReadPriority.BULK);
+    }
+
+    @Override
+    public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset, ReadPriority priority) {
+        // unlike runAsync, skip reads cancelled before they start and hold dst until the read is over
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        dst.retain();
+        try {
+            PriorityReadExecutor.withPriority(executor, priority).execute(() -> {
+                try {
+                    if (future.isDone()) {
+                        return;
+                    }
+                    int read = read(offset, dst.nioBuffer(dstOffset, len));
+                    if (read < len) {
+                        throw new EOFException("File ended after " + read + " of " + len + " bytes at offset " + offset);
+                    }
+                    future.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    dst.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dst.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<ObjectTail> readTail(int len) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                long size = channel.size();
+                int tailLen = (int) Math.min(len, size);
+                ByteBuffer tail = ByteBuffer.allocate(tailLen);
+                read(size - tailLen, tail);
+                return new ObjectTail(tail.array(), size, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, PriorityReadExecutor.withPriority(executor, ReadPriority.METADATA));
+    }
+
+    @Override
+    public CompletableFuture<InputStream> openStream(long offset, long len) {
+        return CompletableFuture.completedFuture(new InputStream() {
+            private long position = offset;
+            private final long end = offset + len;
+            private volatile boolean closed;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int n) throws IOException {
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                if (position >= end) {
+                    return -1;
+                }
+                int r = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(n, end - position)), position);
+                if (r > 0) {
+                    position += r;
+                }
+                return r;
+            }
+
+            @Override
+            public void close() {
+                closed = true;
+            }
+        });
+    }
+
+    /**
+     * Reads until the buffer is full or the end of the file is reached.
+     */
+    private int read(long offset, ByteBuffer dst) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, offset + total);
+            if (n < 0) {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws Exception {
+        channel.close();
+    }
+}
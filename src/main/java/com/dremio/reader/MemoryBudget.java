@@ -0,0 +1,117 @@
+package com.dremio.reader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A ceiling on the bytes of read buffers held at once. Reads reserve their length before allocating a buffer
+ * and give it back once the buffer was consumed.
+ * <p>
+ * Reservations are granted in the order they were made, so a large one is not starved by a stream of small
+ * ones, and a reader that reserves its ranges in order is never left waiting on a range that could not be
+ * reserved because later ones hold the budget. A reservation cancelled while waiting is dropped.
+ */
+public class MemoryBudget {
+
+    private final long limitBytes;
+    private final ArrayDeque<Reservation> waiting = new ArrayDeque<>();
+    private long usedBytes;
+    private long peakBytes;
+
+    public MemoryBudget(long limitBytes) {
+        if (limitBytes <= 0) {
+            throw new IllegalArgumentException("The memory ceiling must be positive");
+        }
+        this.limitBytes = limitBytes;
+    }
+
+    /**
+     * @return a future completing once the bytes are reserved
+     */
+    public CompletableFuture<Void> reserve(long bytes) {
+        if (bytes > limitBytes) {
+            throw new IllegalArgumentException("Cannot reserve " + bytes + " bytes of a " + limitBytes + " byte ceiling");
+        }
+        final Reservation reservation = new Reservation(bytes);
+        synchronized (this) {
+            if (waiting.isEmpty() && usedBytes + bytes <= limitBytes) {
+                take(bytes);
+                reservation.future.complete(null);
+                return reservation.future;
+            }
+            waiting.addLast(reservation);
+        }
+        reservation.future.whenComplete((v, e) -> {
+            if (reservation.future.isCancelled()) {
+                drop(reservation);
+            }
+        });
+        return reservation.future;
+    }
+
+    public void release(long bytes) {
+        final List<Reservation> granted = new ArrayList<>();
+        synchronized (this) {
+            usedBytes -= bytes;
+            grantWaiting(granted);
+        }
+        complete(granted);
+    }
+
+    private void drop(Reservation reservation) {
+        final List<Reservation> granted = new ArrayList<>();
+        synchronized (this) {
+            // a cancelled head may have been all that held back the reservations behind it
+            if (waiting.remove(reservation)) {
+                grantWaiting(granted);
+            }
+        }
+        complete(granted);
+    }
+
+    private void grantWaiting(List<Reservation> granted) {
+        Reservation head;
+        while ((head = waiting.peekFirst()) != null && usedBytes + head.bytes <= limitBytes) {
+            waiting.pollFirst();
+            take(head.bytes);
+            granted.add(head);
+        }
+    }
+
+    private void complete(List<Reservation> granted) {
+        for (Reservation reservation : granted) {
+            // cancelled after it was granted, hand its bytes on
+            if (!reservation.future.complete(null)) {
+                release(reservation.bytes);
+            }
+        }
+    }
+
+    private void take(long bytes) {
+        usedBytes += bytes;
+        peakBytes = Math.max(peakBytes, usedBytes);
+    }
+
+    public long getLimitBytes() {
+        return limitBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    private static final class Reservation {
+        private final long bytes;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+    }
+}
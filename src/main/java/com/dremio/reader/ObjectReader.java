@@ -2,9 +2,12 @@ package com.dremio.reader;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.parquet.hadoop.metadata.ParquetMetadata;
 import org.slf4j.Logger;
@@ -13,6 +16,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Stopwatch;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 
 /**
@@ -22,53 +26,209 @@ public class ObjectReader {
 
     private static final Logger logger = LoggerFactory.getLogger(ObjectReader.class);
 
+    private static final long UNKNOWN_SIZE = -1;
+
     private final AsyncByteReader asyncByteReader;
-    private final long objectSize;
+    private volatile long objectSize;
+    private volatile String eTag;
+    private SpeculativePrefetch prefetch;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final ByteBufAllocator allocator;
     public static final int fixedLengthToRead = 1048576;
 
     public ObjectReader(AsyncByteReader asyncByteReader, long objectSize) {
+        this(asyncByteReader, objectSize, fixedLengthToRead, 0, null);
+    }
+
+    /**
+     * @param chunkSize size of each range read
+     * @param maxInFlight maximum number of range reads in flight, 0 issues all of them at once
+     * @param allocator allocator for a buffer per range read, null reuses a single buffer for all of them
+     */
+    public ObjectReader(AsyncByteReader asyncByteReader, long objectSize, int chunkSize, int maxInFlight, ByteBufAllocator allocator) {
         this.asyncByteReader = asyncByteReader;
         this.objectSize = objectSize;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+        this.allocator = allocator;
+    }
+
+    /**
+     * Creates a reader for an object whose size is not known yet. The size is learned while reading the footer.
+     */
+    public ObjectReader(AsyncByteReader asyncByteReader) {
+        this(asyncByteReader, UNKNOWN_SIZE);
     }
 
     /**
      * This function iterates through the blocks in the object and assigns a thread to each one.
      * The job assigned to each job is an object of the BlockReader class.
+     * The first failed range cancels every other range still queued or in flight and fails the returned
+     * future straight away. Cancelling the returned future does the same.
      */
     public CompletableFuture<Void> readObject() {
+        if (objectSize == UNKNOWN_SIZE) {
+            throw new IllegalStateException("Object size is not known yet, read the footer first.");
+        }
+        return readObject(0, objectSize);
+    }
+
+    /**
+     * Reads the bytes between start and end in ranges of the chunk size, the last one cut short at end.
+     */
+    public CompletableFuture<Void> readObject(long start, long end) {
         try {
-            long bytesToRead = objectSize;
-            long start = 0;
-            final ByteBuf buf = Unpooled.directBuffer(fixedLengthToRead);
-            ArrayList<CompletableFuture<Void>> combinedFutureList = new ArrayList<>();
-            while (bytesToRead > 0) {
-                CompletableFuture<Void> future = asyncByteReader.readFully(start, fixedLengthToRead, buf, 0);
-                combinedFutureList.add(future);
-                start+=fixedLengthToRead;
-                bytesToRead-=fixedLengthToRead;
+            final ByteBuf sharedBuf = allocator == null ? Unpooled.directBuffer(chunkSize) : null;
+            int nScheduled = (int) ((end - start + chunkSize - 1) / chunkSize);
+            ArrayList<CompletableFuture<Void>> combinedFutureList = new ArrayList<>(nScheduled);
+            for (int i = 0; i < nScheduled; i++) {
+                combinedFutureList.add(new CompletableFuture<>());
+            }
+            final RangeReads reads = new RangeReads(start, end, combinedFutureList);
+            AtomicInteger nextRange = new AtomicInteger();
+            int window = maxInFlight > 0 ? Math.min(maxInFlight, nScheduled) : nScheduled;
+            for (int i = 0; i < window; i++) {
+                issueNextRange(nextRange, reads, sharedBuf);
             }
-            int nScheduled = combinedFutureList.size();
-            CompletableFuture<Void>  combinedFuture = CompletableFuture.allOf(combinedFutureList.toArray(new CompletableFuture[nScheduled]));
+            CompletableFuture<Void>  combinedFuture = CompletableFuture.allOf(combinedFutureList.toArray(new CompletableFuture<?>[nScheduled]));
             combinedFuture.whenComplete((v, e) -> {
                 int nFailures = 0, nCancellations = 0;
                 for (CompletableFuture<Void> f : combinedFutureList) {
-                    if (f.isCompletedExceptionally()) {
-                        ++nFailures;
-                        logger.error("Exception reading range bytes!");
-                    }
                     if (f.isCancelled()) {
                         ++nCancellations;
-                        logger.error("Cancelled reading range bytes!");
+                    } else if (f.isCompletedExceptionally()) {
+                        ++nFailures;
                     }
                 }
+                if (nFailures > 0 || nCancellations > 0) {
+                    logger.error("Failed reading range bytes! {} failed, {} cancelled out of {} ranges", nFailures, nCancellations, nScheduled);
+                }
+                if (prefetch != null) {
+                    prefetch.release();
+                    prefetch = null;
+                }
+                if (sharedBuf != null) {
+                    sharedBuf.release();
+                }
+                if (e == null) {
+                    reads.result.complete(null);
+                }
             });
-            return combinedFuture;
+            return reads.result;
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage());
         }
     }
 
+    /**
+     * Issues the next range read, if any is left, and chains the one after it to its completion so that
+     * at most the initial window of reads is in flight.
+     */
+    private void issueNextRange(AtomicInteger nextRange, RangeReads reads, ByteBuf sharedBuf) {
+        if (reads.isAborted()) {
+            return;
+        }
+        final int index = nextRange.getAndIncrement();
+        if (index >= reads.ranges.size()) {
+            return;
+        }
+        final long offset = reads.start + (long) index * chunkSize;
+        readRange(offset, (int) Math.min(chunkSize, reads.end - offset), sharedBuf, reads).whenComplete((v, e) -> {
+            if (e == null) {
+                reads.ranges.get(index).complete(null);
+                issueNextRange(nextRange, reads, sharedBuf);
+            } else {
+                reads.ranges.get(index).completeExceptionally(e);
+                reads.abort(e);
+            }
+        });
+    }
+
+    private CompletableFuture<Void> readRange(long start, int len, ByteBuf sharedBuf, RangeReads reads) {
+        final ByteBuf buf = sharedBuf != null ? sharedBuf : allocator.directBuffer(len);
+        CompletableFuture<Void> future = prefetch == null ? null : prefetch.prefetched(start, len);
+        if (future == null) {
+            future = reads.track(asyncByteReader.readFully(start, len, buf, 0));
+        } else {
+            // fall back to a regular read if the kept prefetch fails
+            future = reads.track(future).handle((v, e) -> e == null || reads.isAborted() ? AsyncByteReader.completedFuture
+                            : reads.track(asyncByteReader.readFully(start, len, buf, 0)))
+                    .thenCompose(f -> f);
+        }
+        if (sharedBuf == null) {
+            future = future.whenComplete((v, e) -> buf.release());
+        }
+        return future;
+    }
+
+    /**
+     * The range futures of a single {@link #readObject()} call, together with the reads issued for them so
+     * they can all be cancelled as soon as one range fails.
+     */
+    private static final class RangeReads {
+        private final long start;
+        private final long end;
+        private final List<CompletableFuture<Void>> ranges;
+        private final List<CompletableFuture<Void>> issued = new ArrayList<>();
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final AtomicBoolean aborted = new AtomicBoolean();
+
+        RangeReads(long start, long end, List<CompletableFuture<Void>> ranges) {
+            this.start = start;
+            this.end = end;
+            this.ranges = ranges;
+            result.whenComplete((v, e) -> {
+                if (result.isCancelled()) {
+                    abort(e);
+                }
+            });
+        }
+
+        boolean isAborted() {
+            return aborted.get();
+        }
+
+        CompletableFuture<Void> track(CompletableFuture<Void> read) {
+            synchronized (issued) {
+                if (!aborted.get()) {
+                    issued.add(read);
+                    return read;
+                }
+            }
+            read.cancel(true);
+            return read;
+        }
+
+        void abort(Throwable cause) {
+            if (!aborted.compareAndSet(false, true)) {
+                return;
+            }
+            result.completeExceptionally(cause);
+            final List<CompletableFuture<Void>> toCancel;
+            synchronized (issued) {
+                toCancel = new ArrayList<>(issued);
+                issued.clear();
+            }
+            for (CompletableFuture<Void> read : toCancel) {
+                read.cancel(true);
+            }
+            for (CompletableFuture<Void> range : ranges) {
+                range.cancel(false);
+            }
+        }
+    }
+
     public ParquetMetadata readFooter() throws ExecutionException, InterruptedException, IOException {
+        return readFooter(0);
+    }
+
+    /**
+     * Reads the footer, speculatively fetching up to the given number of leading bytes while the footer
+     * request is in flight. The prefetch is reconciled with the first row group once the footer arrives
+     * and the kept bytes are reused by {@link #readObject()}.
+     */
+    public ParquetMetadata readFooter(long speculativePrefetchBytes) throws ExecutionException, InterruptedException, IOException {
         final Stopwatch watch = Stopwatch.createStarted();
         logger.info("Starting to read footer!");
         FooterReader.FooterRequestListener listener = new FooterReader.FooterRequestListener() {
@@ -78,12 +238,42 @@ public class ObjectReader {
             @Override
             public void finishInitialRequest() {
             }
+            @Override
+            public void objectDiscovered(long objectLength, String tag) {
+                objectSize = objectLength;
+                eTag = tag;
+            }
         };
-        CompletableFuture<ParquetMetadata> parquetMetadataCompletableFuture = FooterReader.readFooterFuture(asyncByteReader, objectSize, listener);
-        ParquetMetadata parquetMetadata = parquetMetadataCompletableFuture.get();
+        CompletableFuture<ParquetMetadata> parquetMetadataCompletableFuture = objectSize == UNKNOWN_SIZE
+                ? FooterReader.readFooterFuture(asyncByteReader, listener)
+                : FooterReader.readFooterFuture(asyncByteReader, objectSize, listener);
+        if (speculativePrefetchBytes > 0) {
+            prefetch = SpeculativePrefetch.start(asyncByteReader, speculativePrefetchBytes, objectSize, chunkSize);
+        }
+        ParquetMetadata parquetMetadata;
+        try {
+            parquetMetadata = parquetMetadataCompletableFuture.get();
+        } catch (ExecutionException | InterruptedException e) {
+            if (prefetch != null) {
+                prefetch.cancel();
+                prefetch = null;
+            }
+            throw e;
+        }
+        if (prefetch != null) {
+            prefetch.reconcile(parquetMetadata, objectSize);
+        }
         logger.info("Finished reading footer, It took {} ms", watch.elapsed(TimeUnit.MILLISECONDS));
         return parquetMetadata;
     }
 
+    public long getObjectSize() {
+        return objectSize;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
 
 }
@@ -0,0 +1,29 @@
+package com.dremio.reader;
+
+/**
+ * Trailing bytes of an object together with the object details learned from the same response.
+ */
+public class ObjectTail {
+
+    private final byte[] bytes;
+    private final long objectLength;
+    private final String eTag;
+
+    public ObjectTail(byte[] bytes, long objectLength, String eTag) {
+        this.bytes = bytes;
+        this.objectLength = objectLength;
+        this.eTag = eTag;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public long getObjectLength() {
+        return objectLength;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+}
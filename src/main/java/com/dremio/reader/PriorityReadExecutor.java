@@ -0,0 +1,292 @@
+package com.dremio.reader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.metrics.Histogram;
+import com.dremio.utills.NamedThreadFactory;
+
+/**
+ * Runs blocking reads on a fixed number of threads, serving the queued reads of a more urgent
+ * {@link ReadPriority} first, so a footer or dictionary read does not wait behind hundreds of bulk ranges.
+ * <p>
+ * Each class is queued in arrival order. A free thread takes the head of the class with the lowest rank, where
+ * the rank of a read is its class lowered by one for every aging interval it has waited, so bulk and prefetch
+ * reads still get through under a steady stream of urgent ones. Tasks submitted through the executor itself
+ * are bulk reads, {@link #withPriority} gives an executor submitting at another priority.
+ */
+public class PriorityReadExecutor extends AbstractExecutorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PriorityReadExecutor.class);
+
+    private static final ReadPriority[] PRIORITIES = ReadPriority.values();
+
+    private final long agingNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition terminated = lock.newCondition();
+    private final List<ArrayDeque<Queued>> queues = new ArrayList<>();
+    private final List<Histogram> queueWaits = new ArrayList<>();
+    private final List<ExecutorService> views = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private boolean shutdown;
+    private int liveWorkers;
+
+    /**
+     * @param threads reads run at the same time
+     * @param agingMillis time after which a queued read is served as if it were one class more urgent
+     */
+    public PriorityReadExecutor(int threads, long agingMillis, String threadPrefix) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of read threads must be positive");
+        }
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(agingMillis, 1));
+        for (ReadPriority priority : PRIORITIES) {
+            queues.add(new ArrayDeque<>());
+            queueWaits.add(new Histogram());
+            views.add(new PriorityView(priority));
+        }
+        NamedThreadFactory threadFactory = new NamedThreadFactory(threadPrefix);
+        for (int i = 0; i < threads; i++) {
+            Thread worker = threadFactory.newThread(this::work);
+            workers.add(worker);
+        }
+        liveWorkers = threads;
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * @return an executor that queues its tasks at the given priority on this one
+     */
+    public ExecutorService withPriority(ReadPriority priority) {
+        return views.get(priority.ordinal());
+    }
+
+    /**
+     * @return an executor queueing at the given priority when the executor is a priority executor, otherwise
+     * the executor itself
+     */
+    public static ExecutorService withPriority(ExecutorService executor, ReadPriority priority) {
+        return executor instanceof PriorityReadExecutor ? ((PriorityReadExecutor) executor).withPriority(priority) : executor;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        execute(ReadPriority.BULK, command);
+    }
+
+    public void execute(ReadPriority priority, Runnable command) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Read executor is shut down");
+            }
+            queues.get(priority.ordinal()).addLast(new Queued(command, System.nanoTime()));
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void work() {
+        try {
+            Runnable task;
+            while ((task = take()) != null) {
+                // a read cancelled while running interrupts its thread, which must not carry over to the next read
+                Thread.interrupted();
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Read task failed", e);
+                }
+            }
+        } finally {
+            lock.lock();
+            try {
+                if (--liveWorkers == 0) {
+                    terminated.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the next read to run, or null once shut down and drained
+     */
+    private Runnable take() {
+        lock.lock();
+        try {
+            while (true) {
+                final long now = System.nanoTime();
+                int chosen = -1;
+                double chosenRank = Double.MAX_VALUE;
+                for (int i = 0; i < queues.size(); i++) {
+                    final Queued head = queues.get(i).peekFirst();
+                    if (head == null) {
+                        continue;
+                    }
+                    final double rank = i - (double) (now - head.enqueuedNanos) / agingNanos;
+                    // strictly lower, so a tie goes to the more urgent class
+                    if (rank < chosenRank) {
+                        chosen = i;
+                        chosenRank = rank;
+                    }
+                }
+                if (chosen >= 0) {
+                    final Queued queued = queues.get(chosen).pollFirst();
+                    queueWaits.get(chosen).record(now - queued.enqueuedNanos);
+                    return queued.task;
+                }
+                if (shutdown) {
+                    return null;
+                }
+                notEmpty.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void logSummary() {
+        for (ReadPriority priority : PRIORITIES) {
+            final Histogram waits = queueWaits.get(priority.ordinal());
+            if (waits.getCount() > 0) {
+                logger.info("{} reads: {}, queue wait p50 {} ms, p99 {} ms, max {} ms", priority, waits.getCount(),
+                        millis(waits.getPercentile(50)), millis(waits.getPercentile(99)), millis(waits.getMax()));
+            }
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            shutdown = true;
+            for (ArrayDeque<Queued> queue : queues) {
+                queue.forEach(queued -> pending.add(queued.task));
+                queue.clear();
+            }
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.forEach(Thread::interrupt);
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return shutdown && liveWorkers == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!(shutdown && liveWorkers == 0)) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = terminated.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Queued {
+        private final Runnable task;
+        private final long enqueuedNanos;
+
+        Queued(Runnable task, long enqueuedNanos) {
+            this.task = task;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /**
+     * Submits at a fixed priority, and shares the threads and the lifecycle of the executor.
+     */
+    private final class PriorityView extends AbstractExecutorService {
+        private final ReadPriority priority;
+
+        PriorityView(ReadPriority priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            PriorityReadExecutor.this.execute(priority, command);
+        }
+
+        @Override
+        public void shutdown() {
+            PriorityReadExecutor.this.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return PriorityReadExecutor.this.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return PriorityReadExecutor.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return PriorityReadExecutor.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return PriorityReadExecutor.this.awaitTermination(timeout, unit);
+        }
+    }
+}
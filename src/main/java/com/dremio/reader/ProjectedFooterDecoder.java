@@ -0,0 +1,371 @@
+package com.dremio.reader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.parquet.format.ColumnChunk;
+import org.apache.parquet.format.ColumnMetaData;
+import org.apache.parquet.format.ColumnOrder;
+import org.apache.parquet.format.EncryptionAlgorithm;
+import org.apache.parquet.format.FileMetaData;
+import org.apache.parquet.format.KeyValue;
+import org.apache.parquet.format.RowGroup;
+import org.apache.parquet.format.SchemaElement;
+import org.apache.parquet.format.SortingColumn;
+
+import shaded.parquet.org.apache.thrift.TBase;
+import shaded.parquet.org.apache.thrift.TException;
+import shaded.parquet.org.apache.thrift.protocol.TCompactProtocol;
+import shaded.parquet.org.apache.thrift.protocol.TField;
+import shaded.parquet.org.apache.thrift.protocol.TList;
+import shaded.parquet.org.apache.thrift.protocol.TProtocol;
+import shaded.parquet.org.apache.thrift.protocol.TProtocolUtil;
+import shaded.parquet.org.apache.thrift.transport.TTransport;
+import shaded.parquet.org.apache.thrift.transport.TTransportException;
+
+/**
+ * Decodes a Thrift FileMetaData field by field, materialising only the column chunks and row groups selected
+ * by a {@link FooterFilter}.
+ * <p>
+ * Thrift writes the fields of a struct in the order of their ids, so the schema is known before the first row
+ * group and each column chunk can be matched to its leaf column by position. Column chunks of other columns
+ * are walked without building any objects, only picking out the offset and size Parquet uses to assign row
+ * groups to readers. Row groups that are not selected are dropped as soon as they have been walked. While a
+ * column chunk is skipped the footer is read in place, so its strings and binaries are not copied either.
+ */
+final class ProjectedFooterDecoder {
+
+    // FileMetaData
+    private static final short FILE_VERSION = 1;
+    private static final short FILE_SCHEMA = 2;
+    private static final short FILE_NUM_ROWS = 3;
+    private static final short FILE_ROW_GROUPS = 4;
+    private static final short FILE_KEY_VALUE_METADATA = 5;
+    private static final short FILE_CREATED_BY = 6;
+    private static final short FILE_COLUMN_ORDERS = 7;
+    private static final short FILE_ENCRYPTION_ALGORITHM = 8;
+    private static final short FILE_FOOTER_SIGNING_KEY_METADATA = 9;
+    // RowGroup
+    private static final short ROW_GROUP_COLUMNS = 1;
+    private static final short ROW_GROUP_TOTAL_BYTE_SIZE = 2;
+    private static final short ROW_GROUP_NUM_ROWS = 3;
+    private static final short ROW_GROUP_SORTING_COLUMNS = 4;
+    private static final short ROW_GROUP_FILE_OFFSET = 5;
+    private static final short ROW_GROUP_TOTAL_COMPRESSED_SIZE = 6;
+    private static final short ROW_GROUP_ORDINAL = 7;
+    // ColumnChunk and ColumnMetaData
+    private static final short CHUNK_META_DATA = 3;
+    private static final short META_TOTAL_COMPRESSED_SIZE = 6;
+    private static final short META_DATA_PAGE_OFFSET = 9;
+    private static final short META_DICTIONARY_PAGE_OFFSET = 11;
+
+    private ProjectedFooterDecoder() {
+    }
+
+    static FileMetaData decode(byte[] footer, FooterFilter filter) throws IOException {
+        try {
+            return readFileMetaData(new TCompactProtocol(new FooterTransport(footer)), filter);
+        } catch (TException e) {
+            throw new IOException("Unable to decode the footer", e);
+        }
+    }
+
+    private static FileMetaData readFileMetaData(TProtocol protocol, FooterFilter filter) throws TException {
+        final FileMetaData fileMetaData = new FileMetaData();
+        boolean[] projection = null;
+        protocol.readStructBegin();
+        for (TField field = protocol.readFieldBegin(); field.type != TType.STOP; field = protocol.readFieldBegin()) {
+            if (field.id == FILE_VERSION && field.type == TType.I32) {
+                fileMetaData.setVersion(protocol.readI32());
+            } else if (field.id == FILE_SCHEMA && field.type == TType.LIST) {
+                fileMetaData.setSchema(readList(protocol, SchemaElement::new));
+                projection = projection(fileMetaData.getSchema(), filter);
+            } else if (field.id == FILE_NUM_ROWS && field.type == TType.I64) {
+                fileMetaData.setNum_rows(protocol.readI64());
+            } else if (field.id == FILE_ROW_GROUPS && field.type == TType.LIST && projection != null) {
+                fileMetaData.setRow_groups(readRowGroups(protocol, projection, filter));
+            } else if (field.id == FILE_KEY_VALUE_METADATA && field.type == TType.LIST) {
+                fileMetaData.setKey_value_metadata(readList(protocol, KeyValue::new));
+            } else if (field.id == FILE_CREATED_BY && field.type == TType.STRING) {
+                fileMetaData.setCreated_by(protocol.readString());
+            } else if (field.id == FILE_COLUMN_ORDERS && field.type == TType.LIST) {
+                fileMetaData.setColumn_orders(readList(protocol, ColumnOrder::new));
+            } else if (field.id == FILE_ENCRYPTION_ALGORITHM && field.type == TType.STRUCT) {
+                EncryptionAlgorithm algorithm = new EncryptionAlgorithm();
+                algorithm.read(protocol);
+                fileMetaData.setEncryption_algorithm(algorithm);
+            } else if (field.id == FILE_FOOTER_SIGNING_KEY_METADATA && field.type == TType.STRING) {
+                fileMetaData.setFooter_signing_key_metadata(protocol.readBinary());
+            } else {
+                TProtocolUtil.skip(protocol, field.type);
+            }
+            protocol.readFieldEnd();
+        }
+        protocol.readStructEnd();
+        if (fileMetaData.getSchema() == null || fileMetaData.getRow_groups() == null) {
+            throw new TException("Footer without schema or row groups");
+        }
+        return fileMetaData;
+    }
+
+    /**
+     * @return for each leaf column in schema order, whether its chunks are decoded
+     */
+    private static boolean[] projection(List<SchemaElement> schema, FooterFilter filter) {
+        final List<String> leaves = new ArrayList<>();
+        // the first element is the root, whose name is not part of the column paths
+        int next = 1;
+        for (int i = 0; i < schema.get(0).getNum_children(); i++) {
+            next = collectLeaves(schema, next, "", leaves);
+        }
+        final boolean[] projection = new boolean[leaves.size()];
+        for (int i = 0; i < projection.length; i++) {
+            projection[i] = filter.includesColumn(leaves.get(i));
+        }
+        return projection;
+    }
+
+    private static int collectLeaves(List<SchemaElement> schema, int index, String parent, List<String> leaves) {
+        final SchemaElement element = schema.get(index);
+        final String path = parent.isEmpty() ? element.getName() : parent + "." + element.getName();
+        if (element.isSetType()) {
+            leaves.add(path);
+            return index + 1;
+        }
+        int next = index + 1;
+        for (int i = 0; i < element.getNum_children(); i++) {
+            next = collectLeaves(schema, next, path, leaves);
+        }
+        return next;
+    }
+
+    private static List<RowGroup> readRowGroups(TProtocol protocol, boolean[] projection, FooterFilter filter) throws TException {
+        final TList list = protocol.readListBegin();
+        final List<RowGroup> rowGroups = new ArrayList<>(list.size);
+        for (int i = 0; i < list.size; i++) {
+            final RowGroup rowGroup = readRowGroup(protocol, projection, filter);
+            if (rowGroup != null) {
+                rowGroups.add(rowGroup);
+            }
+        }
+        protocol.readListEnd();
+        return rowGroups;
+    }
+
+    /**
+     * @return the row group with the selected column chunks, or null if the filter drops it
+     */
+    private static RowGroup readRowGroup(TProtocol protocol, boolean[] projection, FooterFilter filter) throws TException {
+        final RowGroup rowGroup = new RowGroup();
+        final ChunkExtent extent = new ChunkExtent();
+        long startOffset = -1;
+        long chunksCompressedSize = 0;
+        protocol.readStructBegin();
+        for (TField field = protocol.readFieldBegin(); field.type != TType.STOP; field = protocol.readFieldBegin()) {
+            if (field.id == ROW_GROUP_COLUMNS && field.type == TType.LIST) {
+                final TList list = protocol.readListBegin();
+                final List<ColumnChunk> columns = new ArrayList<>();
+                for (int i = 0; i < list.size; i++) {
+                    if (i < projection.length && projection[i]) {
+                        final ColumnChunk chunk = new ColumnChunk();
+                        chunk.read(protocol);
+                        columns.add(chunk);
+                        extent.of(chunk.getMeta_data());
+                    } else {
+                        extent.skim(protocol);
+                    }
+                    if (i == 0) {
+                        startOffset = extent.offset;
+                    }
+                    chunksCompressedSize += extent.compressedSize;
+                }
+                protocol.readListEnd();
+                rowGroup.setColumns(columns);
+            } else if (field.id == ROW_GROUP_TOTAL_BYTE_SIZE && field.type == TType.I64) {
+                rowGroup.setTotal_byte_size(protocol.readI64());
+            } else if (field.id == ROW_GROUP_NUM_ROWS && field.type == TType.I64) {
+                rowGroup.setNum_rows(protocol.readI64());
+            } else if (field.id == ROW_GROUP_SORTING_COLUMNS && field.type == TType.LIST) {
+                rowGroup.setSorting_columns(readList(protocol, SortingColumn::new));
+            } else if (field.id == ROW_GROUP_FILE_OFFSET && field.type == TType.I64) {
+                rowGroup.setFile_offset(protocol.readI64());
+            } else if (field.id == ROW_GROUP_TOTAL_COMPRESSED_SIZE && field.type == TType.I64) {
+                rowGroup.setTotal_compressed_size(protocol.readI64());
+            } else if (field.id == ROW_GROUP_ORDINAL && field.type == TType.I16) {
+                rowGroup.setOrdinal(protocol.readI16());
+            } else {
+                TProtocolUtil.skip(protocol, field.type);
+            }
+            protocol.readFieldEnd();
+        }
+        protocol.readStructEnd();
+        final long compressedSize = rowGroup.isSetTotal_compressed_size() ? rowGroup.getTotal_compressed_size() : chunksCompressedSize;
+        return filter.includesRowGroup(startOffset, compressedSize) ? rowGroup : null;
+    }
+
+    private static <T extends TBase<?, ?>> List<T> readList(TProtocol protocol, ElementFactory<T> factory) throws TException {
+        final TList list = protocol.readListBegin();
+        final List<T> elements = new ArrayList<>(list.size);
+        for (int i = 0; i < list.size; i++) {
+            final T element = factory.create();
+            element.read(protocol);
+            elements.add(element);
+        }
+        protocol.readListEnd();
+        return elements;
+    }
+
+    /**
+     * Reads the footer from its byte array. In place, the array is exposed as the buffer of the transport,
+     * which lets the compact protocol skip binaries without copying them out. Binaries read in place alias the
+     * array, which the generated structs do not expect, so it is only done while nothing is materialised.
+     */
+    private static final class FooterTransport extends TTransport {
+        private final byte[] bytes;
+        private int position;
+        private boolean inPlace;
+
+        FooterTransport(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws TTransportException {
+            final int n = Math.min(len, bytes.length - position);
+            if (n <= 0) {
+                throw new TTransportException(TTransportException.END_OF_FILE, "Footer ended at byte " + position);
+            }
+            System.arraycopy(bytes, position, buf, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) throws TTransportException {
+            throw new TTransportException("Footer transport is read only");
+        }
+
+        @Override
+        public byte[] getBuffer() {
+            return inPlace ? bytes : null;
+        }
+
+        @Override
+        public int getBufferPosition() {
+            return inPlace ? position : 0;
+        }
+
+        @Override
+        public int getBytesRemainingInBuffer() {
+            return inPlace ? bytes.length - position : -1;
+        }
+
+        @Override
+        public void consumeBuffer(int len) {
+            position += len;
+        }
+    }
+
+    /**
+     * Thrift type ids, which the shaded Thrift runtime only carries inlined into the generated classes.
+     */
+    private static final class TType {
+        static final byte STOP = 0;
+        static final byte I16 = 6;
+        static final byte I32 = 8;
+        static final byte I64 = 10;
+        static final byte STRING = 11;
+        static final byte STRUCT = 12;
+        static final byte LIST = 15;
+    }
+
+    private interface ElementFactory<T> {
+        T create();
+    }
+
+    /**
+     * Start offset and compressed size of the last column chunk seen, the way Parquet derives them.
+     */
+    private static final class ChunkExtent {
+        private long offset;
+        private long compressedSize;
+
+        void of(ColumnMetaData metaData) {
+            offset = -1;
+            compressedSize = 0;
+            if (metaData != null) {
+                set(metaData.getData_page_offset(),
+                        metaData.isSetDictionary_page_offset() ? metaData.getDictionary_page_offset() : -1,
+                        metaData.getTotal_compressed_size());
+            }
+        }
+
+        /**
+         * Walks a ColumnChunk struct without materialising it.
+         */
+        void skim(TProtocol protocol) throws TException {
+            offset = -1;
+            compressedSize = 0;
+            final FooterTransport transport = (FooterTransport) protocol.getTransport();
+            transport.inPlace = true;
+            try {
+                skimChunk(protocol);
+            } finally {
+                transport.inPlace = false;
+            }
+        }
+
+        private void skimChunk(TProtocol protocol) throws TException {
+            protocol.readStructBegin();
+            for (TField field = protocol.readFieldBegin(); field.type != TType.STOP; field = protocol.readFieldBegin()) {
+                if (field.id == CHUNK_META_DATA && field.type == TType.STRUCT) {
+                    skimMetaData(protocol);
+                } else {
+                    TProtocolUtil.skip(protocol, field.type);
+                }
+                protocol.readFieldEnd();
+            }
+            protocol.readStructEnd();
+        }
+
+        private void skimMetaData(TProtocol protocol) throws TException {
+            long dataPageOffset = -1;
+            long dictionaryPageOffset = -1;
+            long totalCompressedSize = 0;
+            protocol.readStructBegin();
+            for (TField field = protocol.readFieldBegin(); field.type != TType.STOP; field = protocol.readFieldBegin()) {
+                if (field.id == META_TOTAL_COMPRESSED_SIZE && field.type == TType.I64) {
+                    totalCompressedSize = protocol.readI64();
+                } else if (field.id == META_DATA_PAGE_OFFSET && field.type == TType.I64) {
+                    dataPageOffset = protocol.readI64();
+                } else if (field.id == META_DICTIONARY_PAGE_OFFSET && field.type == TType.I64) {
+                    dictionaryPageOffset = protocol.readI64();
+                } else {
+                    TProtocolUtil.skip(protocol, field.type);
+                }
+                protocol.readFieldEnd();
+            }
+            protocol.readStructEnd();
+            set(dataPageOffset, dictionaryPageOffset, totalCompressedSize);
+        }
+
+        private void set(long dataPageOffset, long dictionaryPageOffset, long totalCompressedSize) {
+            offset = dictionaryPageOffset >= 0 && dictionaryPageOffset < dataPageOffset ? dictionaryPageOffset : dataPageOffset;
+            compressedSize = totalCompressedSize;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.dremio.reader;
+
+/**
+ * Scheduling classes of range reads, most urgent first. A scheduler serves the reads of a class ahead of
+ * those of the classes after it, and promotes reads that waited long enough so none of them starves.
+ */
+public enum ReadPriority {
+    /**
+     * Footers and other metadata everything else waits on.
+     */
+    METADATA,
+    /**
+     * Dictionary and first data pages of column chunks, small reads decoding starts with.
+     */
+    DICTIONARY,
+    /**
+     * Bulk column data, large transfers that absorb some delay.
+     */
+    BULK,
+    /**
+     * Speculative reads that may turn out not to be needed.
+     */
+    PREFETCH
+}
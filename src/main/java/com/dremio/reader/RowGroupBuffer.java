@@ -0,0 +1,58 @@
+package com.dremio.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+
+/**
+ * The bytes of a row group held as a composite of the direct buffers the range reads were written into.
+ * Columns are exposed as views on the composite, so assembling a row group does not copy any data.
+ * The buffer is reference counted, views are only valid until it is released.
+ */
+public class RowGroupBuffer {
+
+    private final CompositeByteBuf buffer;
+    private final List<Integer> columnOffsets = new ArrayList<>();
+
+    public RowGroupBuffer(CompositeByteBuf buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Appends the next column chunk. Ownership of the column buffer is transferred to this row group.
+     */
+    public void addColumn(ByteBuf column) {
+        columnOffsets.add(buffer.writerIndex());
+        buffer.addFlattenedComponents(true, column);
+    }
+
+    public int getColumnCount() {
+        return columnOffsets.size();
+    }
+
+    /**
+     * @return a view of the bytes of the given column, which shares memory with this row group
+     */
+    public ByteBuf column(int index) {
+        int start = columnOffsets.get(index);
+        int end = index + 1 < columnOffsets.size() ? columnOffsets.get(index + 1) : buffer.writerIndex();
+        return buffer.slice(start, end - start);
+    }
+
+    /**
+     * @return a view of the bytes of the whole row group
+     */
+    public ByteBuf buffer() {
+        return buffer.slice();
+    }
+
+    public int size() {
+        return buffer.writerIndex();
+    }
+
+    public void release() {
+        buffer.release();
+    }
+}
@@ -0,0 +1,304 @@
+package com.dremio.reader;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Shares the range reads in flight between all readers of the same object in the process, so that concurrent
+ * reads of the same bytes, like the footer and column chunks of a hot file, go out as a single request.
+ * <p>
+ * A read fully covered by reads in flight attaches to them and has its bytes copied out when they complete.
+ * A read that overlaps them in part attaches for the overlap and fetches only the missing ranges, which in
+ * turn become reads in flight others can attach to. The bytes land in the buffer of the read that issued the
+ * request and are copied to the attached reads before that read completes, so a read nobody attaches to
+ * costs no copy. Cancelling a read that others attached to stops its request, and the attached reads then
+ * fetch their part themselves.
+ */
+public class SingleFlightAsyncByteReader implements AsyncByteReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SingleFlightAsyncByteReader.class);
+
+    // reads in flight by object key, then by start offset; the ranges of an object never overlap
+    private static final ConcurrentHashMap<String, TreeMap<Long, Flight>> inFlight = new ConcurrentHashMap<>();
+
+    private static final AtomicLong requestedBytes = new AtomicLong();
+    private static final AtomicLong fetchedBytes = new AtomicLong();
+    private static final AtomicLong sharedBytes = new AtomicLong();
+    private static final AtomicLong attachedReads = new AtomicLong();
+
+    private final AsyncByteReader delegate;
+    private final String key;
+
+    /**
+     * @param key identifies the object and its version, readers with the same key share their reads
+     */
+    public SingleFlightAsyncByteReader(AsyncByteReader delegate, String key) {
+        this.delegate = delegate;
+        this.key = key;
+    }
+
+    @Override
+    public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset) {
+        return readFully(offset, len, dst, dstOffset, ReadPriority.BULK);
+    }
+
+    /**
+     * Ranges in flight keep the priority of the read that issued them, an urgent read attached to a range of
+     * a less urgent one waits for it as it was queued.
+     */
+    @Override
+    public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset, ReadPriority priority) {
+        if (len <= 0) {
+            return delegate.readFully(offset, len, dst, dstOffset, priority);
+        }
+        final List<Flight> led = new ArrayList<>();
+        final List<Waiter> attached = new ArrayList<>();
+        inFlight.compute(key, (k, existing) -> {
+            final TreeMap<Long, Flight> flights = existing != null ? existing : new TreeMap<>();
+            final long end = offset + len;
+            long pos = offset;
+            final Map.Entry<Long, Flight> floor = flights.floorEntry(offset);
+            for (Flight flight : flights.tailMap(floor != null ? floor.getKey() : offset, true).values()) {
+                if (flight.offset >= end) {
+                    break;
+                }
+                if (flight.end() <= pos) {
+                    continue;
+                }
+                if (flight.offset > pos) {
+                    led.add(new Flight(pos, (int) (flight.offset - pos), dst, dstOffset + (int) (pos - offset), priority));
+                    pos = flight.offset;
+                }
+                final long overlapEnd = Math.min(end, flight.end());
+                final Waiter waiter = new Waiter(pos, (int) (overlapEnd - pos), dst, dstOffset + (int) (pos - offset), priority);
+                flight.waiters.add(waiter);
+                attached.add(waiter);
+                pos = overlapEnd;
+            }
+            if (pos < end) {
+                led.add(new Flight(pos, (int) (end - pos), dst, dstOffset + (int) (pos - offset), priority));
+            }
+            led.forEach(flight -> flights.put(flight.offset, flight));
+            return flights;
+        });
+
+        requestedBytes.addAndGet(len);
+        final List<CompletableFuture<Void>> parts = new ArrayList<>(led.size() + attached.size());
+        for (Flight flight : led) {
+            fetchedBytes.addAndGet(flight.len);
+            flight.start();
+            parts.add(flight.done);
+        }
+        for (Waiter waiter : attached) {
+            sharedBytes.addAndGet(waiter.len);
+            attachedReads.incrementAndGet();
+            parts.add(waiter.future);
+        }
+
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        result.whenComplete((v, e) -> {
+            if (result.isCancelled()) {
+                led.forEach(Flight::cancel);
+                attached.forEach(Waiter::cancel);
+            }
+        });
+        CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0])).whenComplete((v, e) -> {
+            if (e == null) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<ObjectTail> readTail(int len) {
+        return delegate.readTail(len);
+    }
+
+    @Override
+    public CompletableFuture<InputStream> openStream(long offset, long len) {
+        return delegate.openStream(offset, len);
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+
+    public static void logSummary() {
+        final long requested = requestedBytes.get();
+        logger.info("Single flight reads: {} bytes requested, {} fetched, {} shared by {} attached reads ({}% saved)",
+                requested, fetchedBytes.get(), sharedBytes.get(), attachedReads.get(),
+                String.format("%.1f", requested == 0 ? 0 : 100.0 * sharedBytes.get() / requested));
+    }
+
+    /**
+     * A range read in flight, issued into the buffer of the read that requested it, and the reads attached to it.
+     */
+    private final class Flight {
+        private static final int RUNNING = 0;
+        private static final int FINISHED = 1;
+        private static final int CANCELLED = 2;
+
+        private final long offset;
+        private final int len;
+        private final ByteBuf dst;
+        private final int dstOffset;
+        private final ReadPriority priority;
+        // only changed while the object entry of the map is locked, and read once the flight left it
+        private final List<Waiter> waiters = new ArrayList<>();
+        // completes once the attached reads have their bytes
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        private volatile CompletableFuture<Void> read;
+
+        Flight(long offset, int len, ByteBuf dst, int dstOffset, ReadPriority priority) {
+            this.offset = offset;
+            this.len = len;
+            this.dst = dst;
+            this.dstOffset = dstOffset;
+            this.priority = priority;
+        }
+
+        long end() {
+            return offset + len;
+        }
+
+        void start() {
+            CompletableFuture<Void> future;
+            try {
+                future = delegate.readFully(offset, len, dst, dstOffset, priority);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            read = future;
+            future.whenComplete(this::finish);
+        }
+
+        private void finish(Void v, Throwable e) {
+            if (!state.compareAndSet(RUNNING, FINISHED)) {
+                return;
+            }
+            remove();
+            for (Waiter waiter : waiters) {
+                if (e == null) {
+                    waiter.copyFrom(dst, dstOffset + (int) (waiter.offset - offset));
+                } else {
+                    waiter.fail(e);
+                }
+            }
+            if (e == null) {
+                done.complete(null);
+            } else {
+                done.completeExceptionally(e);
+            }
+        }
+
+        void cancel() {
+            if (!state.compareAndSet(RUNNING, CANCELLED)) {
+                return;
+            }
+            remove();
+            final CompletableFuture<Void> future = read;
+            if (future != null) {
+                future.cancel(true);
+            }
+            done.cancel(false);
+            // the bytes were going to the buffer of the cancelled read, the attached reads fetch their own
+            waiters.forEach(waiter -> waiter.fetch(delegate));
+        }
+
+        private void remove() {
+            inFlight.computeIfPresent(key, (k, flights) -> {
+                flights.remove(offset, this);
+                return flights.isEmpty() ? null : flights;
+            });
+        }
+    }
+
+    /**
+     * The part of a read covered by a read in flight.
+     */
+    private static final class Waiter {
+        private static final int PENDING = 0;
+        private static final int DONE = 1;
+        private static final int CANCELLED = 2;
+
+        private final long offset;
+        private final int len;
+        private final ByteBuf dst;
+        private final int dstOffset;
+        private final ReadPriority priority;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private volatile CompletableFuture<Void> fallback;
+
+        Waiter(long offset, int len, ByteBuf dst, int dstOffset, ReadPriority priority) {
+            this.offset = offset;
+            this.len = len;
+            this.dst = dst;
+            this.dstOffset = dstOffset;
+            this.priority = priority;
+        }
+
+        void copyFrom(ByteBuf src, int srcOffset) {
+            if (state.compareAndSet(PENDING, DONE)) {
+                dst.setBytes(dstOffset, src, srcOffset, len);
+                future.complete(null);
+            }
+        }
+
+        void fail(Throwable e) {
+            if (state.compareAndSet(PENDING, DONE)) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        void fetch(AsyncByteReader reader) {
+            if (state.get() != PENDING) {
+                return;
+            }
+            final CompletableFuture<Void> read = reader.readFully(offset, len, dst, dstOffset, priority);
+            fallback = read;
+            read.whenComplete((v, e) -> {
+                if (!state.compareAndSet(PENDING, DONE)) {
+                    return;
+                }
+                if (e == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(e);
+                }
+            });
+            if (state.get() == CANCELLED) {
+                read.cancel(true);
+            }
+        }
+
+        void cancel() {
+            if (state.compareAndSet(PENDING, CANCELLED)) {
+                future.cancel(false);
+                final CompletableFuture<Void> read = fallback;
+                if (read != null) {
+                    read.cancel(true);
+                }
+            }
+        }
+    }
+}
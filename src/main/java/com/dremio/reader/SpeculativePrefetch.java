@@ -0,0 +1,122 @@
+package com.dremio.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * Fetches the leading bytes of an object while the footer request is still in flight.
+ * The amount fetched is the first row group size learned from earlier files, bounded by a fixed budget.
+ * Once the footer is known the prefetch is reconciled with the actual first row group: chunks that fall
+ * inside it are kept and the rest are cancelled.
+ */
+public class SpeculativePrefetch {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpeculativePrefetch.class);
+
+    // End offset of the first row group of the last file reconciled in this process.
+    private static final AtomicLong learnedFirstRowGroupEnd = new AtomicLong();
+
+    private final ByteBuf buf;
+    private final int chunkSize;
+    private final List<CompletableFuture<Void>> chunks = new ArrayList<>();
+    private volatile long keptEnd = -1;
+    private volatile long objectSize;
+
+    private SpeculativePrefetch(int plannedBytes, int chunkSize) {
+        this.buf = Unpooled.directBuffer(plannedBytes);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Starts reading the leading bytes of the object.
+     * @param reader reader for the object
+     * @param budget maximum number of bytes to fetch speculatively
+     * @param knownObjectSize size of the object, or a negative value when it is not known yet
+     * @param chunkSize size of each range request
+     */
+    public static SpeculativePrefetch start(AsyncByteReader reader, long budget, long knownObjectSize, int chunkSize) {
+        long learned = learnedFirstRowGroupEnd.get();
+        long planned = learned > 0 ? Math.min(learned, budget) : budget;
+        if (knownObjectSize >= 0) {
+            planned = Math.min(planned, knownObjectSize);
+        }
+        SpeculativePrefetch prefetch = new SpeculativePrefetch((int) Math.min(planned, Integer.MAX_VALUE), chunkSize);
+        logger.info("Speculatively prefetching {} bytes, learned first row group end is {}", planned, learned);
+        for (long start = 0; start < planned; start += chunkSize) {
+            int len = (int) Math.min(chunkSize, planned - start);
+            prefetch.chunks.add(reader.readFully(start, len, prefetch.buf, (int) start, ReadPriority.PREFETCH));
+        }
+        return prefetch;
+    }
+
+    /**
+     * Keeps the chunks that overlap the first row group and cancels the rest.
+     * @return the end offset of the bytes kept
+     */
+    public long reconcile(ParquetMetadata metadata, long objectSize) {
+        List<BlockMetaData> blocks = metadata.getBlocks();
+        long usefulEnd = 0;
+        if (!blocks.isEmpty()) {
+            BlockMetaData first = blocks.get(0);
+            usefulEnd = Math.min(first.getStartingPos() + first.getCompressedSize(), objectSize);
+            learnedFirstRowGroupEnd.set(usefulEnd);
+        }
+        long kept = 0;
+        int cancelled = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            CompletableFuture<Void> chunk = chunks.get(i);
+            long start = (long) i * chunkSize;
+            if (start < usefulEnd && !chunk.isCompletedExceptionally()) {
+                kept = Math.min(start + chunkSize, buf.capacity());
+            } else if (chunk.cancel(true)) {
+                ++cancelled;
+            }
+        }
+        this.objectSize = objectSize;
+        keptEnd = kept;
+        logger.info("Reconciled speculative prefetch with first row group ending at {}, kept {} bytes, cancelled {} chunks",
+                usefulEnd, kept, cancelled);
+        return kept;
+    }
+
+    /**
+     * Returns the prefetch covering exactly the given range if it was kept, otherwise null.
+     */
+    public CompletableFuture<Void> prefetched(long start, int len) {
+        if (start % chunkSize != 0 || start >= keptEnd) {
+            return null;
+        }
+        long chunkEnd = Math.min(start + chunkSize, buf.capacity());
+        if (chunkEnd < Math.min(start + len, objectSize)) {
+            return null;
+        }
+        return chunks.get((int) (start / chunkSize));
+    }
+
+    /**
+     * Abandons the prefetch, used when the footer could not be read. The buffer is released once the
+     * cancelled chunk reads have wound down.
+     */
+    public void cancel() {
+        chunks.forEach(chunk -> chunk.cancel(true));
+        release();
+    }
+
+    /**
+     * Releases the buffer once every chunk read completed or was cancelled, so that a read still in flight,
+     * as when the object read failed before getting to it, never writes into a released buffer.
+     */
+    public void release() {
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).whenComplete((v, e) -> buf.release());
+    }
+}
@@ -0,0 +1,293 @@
+package com.dremio.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Reads the column chunks of the row groups listed in a footer as streams of bounded buffers, so that objects and
+ * row groups of any size can be read within a fixed amount of memory.
+ * <p>
+ * Every column chunk is split into ranges of the chunk size at long offsets. Ranges are read in file order, as
+ * many at once as the {@link MemoryBudget} allows, and handed to the consumer in order within their column chunk.
+ * A range holds its share of the budget from before its buffer is allocated until the consumer returned, then
+ * its buffer is released, so the buffers held never exceed the ceiling however large the row group is.
+ * <p>
+ * The first failed range, or exception thrown by the consumer, cancels the ranges in flight and fails the
+ * returned future. Cancelling the returned future does the same.
+ */
+public class StreamingObjectReader {
+
+    /**
+     * Receives the ranges of the column chunks. Ranges of one column chunk arrive in order and one at a time,
+     * ranges of different column chunks may arrive at the same time on different threads.
+     */
+    public interface ChunkConsumer {
+        /**
+         * @param rowGroup index of the row group in the footer
+         * @param column index of the column chunk in the row group
+         * @param offset position of the range in the object
+         * @param bytes the range, only valid until the call returns
+         * @param last whether this is the last range of the column chunk
+         */
+        void accept(int rowGroup, int column, long offset, ByteBuf bytes, boolean last) throws Exception;
+    }
+
+    private final AsyncByteReader reader;
+    private final int chunkSize;
+    private final MemoryBudget budget;
+    private final ByteBufAllocator allocator;
+    private final Executor consumeExecutor;
+
+    /**
+     * Hands the ranges to the consumer on the threads completing the reads, which may be the calling thread
+     * when a read completes at once.
+     */
+    public StreamingObjectReader(AsyncByteReader reader, int chunkSize, MemoryBudget budget, ByteBufAllocator allocator) {
+        this(reader, chunkSize, budget, allocator, Runnable::run);
+    }
+
+    /**
+     * @param chunkSize size of each range read, lowered to the ceiling of the budget if larger
+     * @param consumeExecutor executor the consumer is called on
+     */
+    public StreamingObjectReader(AsyncByteReader reader, int chunkSize, MemoryBudget budget, ByteBufAllocator allocator,
+                                 Executor consumeExecutor) {
+        this.reader = reader;
+        this.chunkSize = (int) Math.min(chunkSize, budget.getLimitBytes());
+        this.budget = budget;
+        this.allocator = allocator;
+        this.consumeExecutor = consumeExecutor;
+    }
+
+    /**
+     * @return a future completing with the number of bytes handed to the consumer once every range was consumed
+     */
+    public CompletableFuture<Long> read(ParquetMetadata footer, ChunkConsumer consumer) {
+        final List<Range> ranges = new ArrayList<>();
+        final List<BlockMetaData> blocks = footer.getBlocks();
+        for (int rowGroup = 0; rowGroup < blocks.size(); rowGroup++) {
+            final List<ColumnChunkMetaData> columns = blocks.get(rowGroup).getColumns();
+            for (int column = 0; column < columns.size(); column++) {
+                final ColumnChunkMetaData columnData = columns.get(column);
+                final long start = columnData.getStartingPos();
+                final long end = start + columnData.getTotalSize();
+                final ColumnStream stream = new ColumnStream();
+                for (long offset = start; offset < end; offset += chunkSize) {
+                    final Range range = new Range(rowGroup, column, offset, (int) Math.min(chunkSize, end - offset),
+                            offset + chunkSize >= end, stream);
+                    stream.ranges.add(range);
+                    ranges.add(range);
+                }
+            }
+        }
+        return new Read(ranges, consumer).start();
+    }
+
+    /**
+     * The ranges of one column chunk and the next one to hand to the consumer.
+     */
+    private static final class ColumnStream {
+        private final List<Range> ranges = new ArrayList<>();
+        private int next;
+    }
+
+    private final class Range {
+        private static final int WAITING = 0;
+        private static final int RESERVED = 1;
+        private static final int CONSUMING = 2;
+        private static final int RELEASED = 3;
+
+        private final int rowGroup;
+        private final int column;
+        private final long offset;
+        private final int len;
+        private final boolean last;
+        private final ColumnStream stream;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile ByteBuf buf;
+        private volatile boolean ready;
+
+        Range(int rowGroup, int column, long offset, int len, boolean last, ColumnStream stream) {
+            this.rowGroup = rowGroup;
+            this.column = column;
+            this.offset = offset;
+            this.len = len;
+            this.last = last;
+            this.stream = stream;
+        }
+
+        /**
+         * Gives back the buffer and the budget of a range that was reserved, whether it was read or not.
+         */
+        void releaseReserved() {
+            if (state.compareAndSet(RESERVED, RELEASED)) {
+                free();
+            }
+        }
+
+        void free() {
+            buf.release();
+            budget.release(len);
+        }
+    }
+
+    /**
+     * A single {@link #read} call.
+     */
+    private final class Read {
+        private final List<Range> ranges;
+        private final ChunkConsumer consumer;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private final Set<CompletableFuture<Void>> pending = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger remaining;
+        private final AtomicLong consumedBytes = new AtomicLong();
+        private int next;
+        private boolean reserving;
+
+        Read(List<Range> ranges, ChunkConsumer consumer) {
+            this.ranges = ranges;
+            this.consumer = consumer;
+            this.remaining = new AtomicInteger(ranges.size());
+        }
+
+        CompletableFuture<Long> start() {
+            if (ranges.isEmpty()) {
+                result.complete(0L);
+                return result;
+            }
+            result.whenComplete((v, e) -> {
+                if (e != null) {
+                    abort();
+                }
+            });
+            reserveNext();
+            return result;
+        }
+
+        /**
+         * Reserves the budget of the ranges in order, one reservation waiting at a time, and starts the read of
+         * each range as soon as it is reserved.
+         */
+        private void reserveNext() {
+            while (true) {
+                final Range range;
+                synchronized (this) {
+                    if (reserving || result.isDone() || next >= ranges.size()) {
+                        return;
+                    }
+                    range = ranges.get(next++);
+                    reserving = true;
+                }
+                final CompletableFuture<Void> reservation = budget.reserve(range.len);
+                if (reservation.isDone() && !reservation.isCompletedExceptionally()) {
+                    reserved(range);
+                    continue;
+                }
+                pending.add(reservation);
+                reservation.whenComplete((v, e) -> {
+                    pending.remove(reservation);
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                        return;
+                    }
+                    reserved(range);
+                    reserveNext();
+                });
+                if (result.isDone()) {
+                    reservation.cancel(false);
+                }
+                return;
+            }
+        }
+
+        private void reserved(Range range) {
+            synchronized (this) {
+                reserving = false;
+            }
+            range.buf = allocator.directBuffer(range.len);
+            if (!range.state.compareAndSet(Range.WAITING, Range.RESERVED)) {
+                // aborted while the reservation was granted
+                range.free();
+                return;
+            }
+            if (result.isDone()) {
+                range.releaseReserved();
+                return;
+            }
+            final CompletableFuture<Void> read = reader.readFully(range.offset, range.len, range.buf, 0);
+            pending.add(read);
+            read.whenCompleteAsync((v, e) -> {
+                pending.remove(read);
+                if (e != null) {
+                    result.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    return;
+                }
+                range.buf.writerIndex(range.len);
+                range.ready = true;
+                consume(range.stream);
+            }, consumeExecutor);
+        }
+
+        /**
+         * Hands the ranges of the column chunk that are read, and follow those already consumed, to the consumer.
+         */
+        private void consume(ColumnStream stream) {
+            final List<Range> consumed = new ArrayList<>();
+            try {
+                synchronized (stream) {
+                    while (stream.next < stream.ranges.size() && stream.ranges.get(stream.next).ready && !result.isDone()) {
+                        final Range range = stream.ranges.get(stream.next++);
+                        if (!range.state.compareAndSet(Range.RESERVED, Range.CONSUMING)) {
+                            return;
+                        }
+                        consumed.add(range);
+                        consumer.accept(range.rowGroup, range.column, range.offset, range.buf, range.last);
+                        consumedBytes.addAndGet(range.len);
+                    }
+                }
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            } finally {
+                // outside the lock, as giving back the budget may start reads that complete on this thread
+                for (Range range : consumed) {
+                    range.state.set(Range.RELEASED);
+                    range.free();
+                }
+            }
+            if (remaining.addAndGet(-consumed.size()) == 0 && !consumed.isEmpty()) {
+                result.complete(consumedBytes.get());
+            }
+        }
+
+        private void abort() {
+            for (CompletableFuture<Void> future : pending) {
+                future.cancel(true);
+            }
+            final int reservedUpTo;
+            synchronized (this) {
+                reservedUpTo = next;
+            }
+            for (int i = 0; i < reservedUpTo; i++) {
+                final Range range = ranges.get(i);
+                // a waiting range is released by the thread that reserved it once it sees the read failed
+                if (!range.state.compareAndSet(Range.WAITING, Range.RELEASED)) {
+                    range.releaseReserved();
+                }
+            }
+        }
+    }
+}
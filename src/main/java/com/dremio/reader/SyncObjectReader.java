@@ -0,0 +1,96 @@
+package com.dremio.reader;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Stopwatch;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+
+/**
+ * Reads the row groups listed in the footer of an object one after the other, each with a {@link BlockReader}
+ * that reads its column chunks on a thread per column and blocks until all of them arrived.
+ * <p>
+ * This is the synchronous counterpart of {@link ObjectReader}: the same footer driven plan, but at most one
+ * row group in flight and the calling thread waiting on every read. Each row group is released as soon as it
+ * was read, so at most one is held in memory.
+ */
+public class SyncObjectReader {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncObjectReader.class);
+
+    private final String bucket;
+    private final String path;
+    private final S3AsyncClient client;
+    private final ByteBufAllocator allocator;
+
+    public SyncObjectReader(String bucket, String path, S3AsyncClient client) {
+        this(bucket, path, client, PooledByteBufAllocator.DEFAULT);
+    }
+
+    public SyncObjectReader(String bucket, String path, S3AsyncClient client, ByteBufAllocator allocator) {
+        this.bucket = bucket;
+        this.path = path;
+        this.client = client;
+        this.allocator = allocator;
+    }
+
+    /**
+     * Reads the footer through the given reader, once the size of the object was looked up with a HEAD request,
+     * as the plain S3 async reader cannot read a suffix range.
+     */
+    public ParquetMetadata readFooter(AsyncByteReader footerReader) throws ExecutionException, InterruptedException, IOException {
+        return new ObjectReader(footerReader, headObjectSize()).readFooter();
+    }
+
+    /**
+     * @return the size of the object, looked up with a HEAD request
+     */
+    public long headObjectSize() throws ExecutionException, InterruptedException {
+        return client.headObject(HeadObjectRequest.builder().bucket(bucket).key(path).build()).get().contentLength();
+    }
+
+    /**
+     * @return the number of bytes read
+     */
+    public long readRowGroups(ParquetMetadata footer) throws ExecutionException, InterruptedException {
+        final List<BlockMetaData> blocks = footer.getBlocks();
+        long bytesRead = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            final Stopwatch watch = Stopwatch.createStarted();
+            final RowGroupBuffer rowGroup = new BlockReader(path, bucket, i, client, blocks.get(i), allocator).call();
+            try {
+                bytesRead += rowGroup.size();
+            } finally {
+                rowGroup.release();
+            }
+            logger.debug("Read row group {} of {} with {} columns in {} ms", i, path, blocks.get(i).getColumns().size(),
+                    watch.elapsed(TimeUnit.MILLISECONDS));
+        }
+        return bytesRead;
+    }
+
+    /**
+     * @return the first and the end offset of the bytes covered by the row groups, which the
+     * {@link ObjectReader} reads in ranges for the same plan
+     */
+    public static long[] rowGroupSpan(ParquetMetadata footer) {
+        long start = Long.MAX_VALUE;
+        long end = 0;
+        for (BlockMetaData block : footer.getBlocks()) {
+            start = Math.min(start, block.getStartingPos());
+            end = Math.max(end, block.getStartingPos() + block.getCompressedSize());
+        }
+        return start > end ? new long[] {0, 0} : new long[] {start, end};
+    }
+}
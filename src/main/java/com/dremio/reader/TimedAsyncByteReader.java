@@ -0,0 +1,54 @@
+package com.dremio.reader;
+
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+import com.dremio.metrics.Histogram;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Records the latency of every range read of the wrapped reader, in nanoseconds, into a histogram.
+ */
+public class TimedAsyncByteReader implements AsyncByteReader {
+
+    private final AsyncByteReader delegate;
+    private final Histogram latencies;
+
+    public TimedAsyncByteReader(AsyncByteReader delegate, Histogram latencies) {
+        this.delegate = delegate;
+        this.latencies = latencies;
+    }
+
+    @Override
+    public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset) {
+        return readFully(offset, len, dst, dstOffset, ReadPriority.BULK);
+    }
+
+    @Override
+    public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset, ReadPriority priority) {
+        final long start = System.nanoTime();
+        // hand back the delegate's own future so that cancelling it reaches the read
+        final CompletableFuture<Void> future = delegate.readFully(offset, len, dst, dstOffset, priority);
+        future.whenComplete((v, e) -> latencies.record(System.nanoTime() - start));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<ObjectTail> readTail(int len) {
+        final long start = System.nanoTime();
+        final CompletableFuture<ObjectTail> future = delegate.readTail(len);
+        future.whenComplete((v, e) -> latencies.record(System.nanoTime() - start));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<InputStream> openStream(long offset, long len) {
+        return delegate.openStream(offset, len);
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+}
@@ -0,0 +1,132 @@
+package com.dremio.s3;
+
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import io.netty.buffer.ByteBuf;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * Writes the response body of a GET straight into a destination buffer as the network delivers it,
+ * instead of collecting it into a byte array first as {@link AsyncResponseTransformer#toBytes()} does.
+ * <p>
+ * The body must be exactly the expected length: a longer one, such as the whole object sent back for a range
+ * the server ignored, fails before a byte past the range is written, and a shorter one fails on completion.
+ */
+public final class ByteBufResponseTransformer implements AsyncResponseTransformer<GetObjectResponse, GetObjectResponse> {
+  private final ByteBuf dst;
+  private final int dstOffset;
+  private final int expectedLength;
+  private volatile CompletableFuture<GetObjectResponse> future;
+  private volatile GetObjectResponse response;
+  private volatile Subscription subscription;
+  private volatile int bytesWritten;
+  private boolean stopped;
+
+  /**
+   * @param expectedLength length of the requested range, the bytes written start at dstOffset
+   */
+  public ByteBufResponseTransformer(ByteBuf dst, int dstOffset, int expectedLength) {
+    this.dst = dst;
+    this.dstOffset = dstOffset;
+    this.expectedLength = expectedLength;
+  }
+
+  /**
+   * @return the number of body bytes written into the destination buffer so far
+   */
+  public int getBytesWritten() {
+    return bytesWritten;
+  }
+
+  @Override
+  public CompletableFuture<GetObjectResponse> prepare() {
+    future = new CompletableFuture<>();
+    return future;
+  }
+
+  @Override
+  public void onResponse(GetObjectResponse response) {
+    this.response = response;
+  }
+
+  @Override
+  public void onStream(SdkPublisher<ByteBuffer> publisher) {
+    publisher.subscribe(new Subscriber<ByteBuffer>() {
+      private int position = dstOffset;
+
+      @Override
+      public void onSubscribe(Subscription s) {
+        subscription = s;
+        s.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(ByteBuffer byteBuffer) {
+        synchronized (ByteBufResponseTransformer.this) {
+          if (stopped) {
+            return;
+          }
+          try {
+            int n = byteBuffer.remaining();
+            if (n > expectedLength - (position - dstOffset)) {
+              stopped = true;
+              subscription.cancel();
+              future.completeExceptionally(new IllegalStateException("Response body is longer than the "
+                + expectedLength + " bytes requested"));
+              return;
+            }
+            dst.setBytes(position, byteBuffer);
+            position += n;
+            bytesWritten = position - dstOffset;
+          } catch (RuntimeException e) {
+            stopped = true;
+            subscription.cancel();
+            future.completeExceptionally(e);
+          }
+        }
+      }
+
+      @Override
+      public void onError(Throwable t) {
+        future.completeExceptionally(t);
+      }
+
+      @Override
+      public void onComplete() {
+        final int received = bytesWritten;
+        if (received != expectedLength) {
+          future.completeExceptionally(new EOFException("Response ended after " + received + " of "
+            + expectedLength + " bytes"));
+          return;
+        }
+        future.complete(response);
+      }
+    });
+  }
+
+  /**
+   * Stops writing into the destination buffer and cancels the body subscription. Once this returns the
+   * buffer is no longer touched, so it can be released while the request is still winding down.
+   */
+  public synchronized void stop() {
+    stopped = true;
+    Subscription s = subscription;
+    if (s != null) {
+      s.cancel();
+    }
+  }
+
+  @Override
+  public void exceptionOccurred(Throwable error) {
+    if (future != null) {
+      future.completeExceptionally(error);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2017-2019 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.s3;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.http.Abortable;
+
+/**
+ * Future of a blocking read that runs on an executor once a permit is granted.
+ * <p>
+ * Unlike a future from {@link CompletableFuture#runAsync}, cancelling it reaches the read: a read still
+ * waiting for its permit or a thread is dropped, and a read in flight has its HTTP response aborted, which
+ * closes the connection instead of draining the remaining body, and its thread interrupted.
+ * The onFinished callback runs exactly once, after the read can no longer touch its buffers.
+ */
+public final class CancellableRead<T> extends CompletableFuture<T> {
+  private static final int NEW = 0;
+  private static final int RUNNING = 1;
+  private static final int DROPPED = 2;
+
+  private final AtomicInteger state = new AtomicInteger(NEW);
+  private final Runnable onFinished;
+  private volatile CompletableFuture<Void> permit;
+  private volatile Future<?> task;
+  private volatile Abortable response;
+
+  public CancellableRead(Runnable onFinished) {
+    this.onFinished = onFinished;
+  }
+
+  /**
+   * Runs the read on the executor once the permit completes.
+   */
+  public CancellableRead<T> start(CompletableFuture<Void> permit, ExecutorService executor, Supplier<T> read) {
+    this.permit = permit;
+    permit.whenComplete((v, e) -> {
+      if (e != null) {
+        completeExceptionally(e);
+        drop();
+        return;
+      }
+      try {
+        task = executor.submit(() -> run(read));
+      } catch (RejectedExecutionException ree) {
+        completeExceptionally(ree);
+        drop();
+        return;
+      }
+      if (isCancelled()) {
+        task.cancel(true);
+      }
+    });
+    return this;
+  }
+
+  private void run(Supplier<T> read) {
+    if (!state.compareAndSet(NEW, RUNNING)) {
+      return;
+    }
+    try {
+      if (!isDone()) {
+        complete(read.get());
+      }
+    } catch (Throwable t) {
+      completeExceptionally(t);
+    } finally {
+      onFinished.run();
+    }
+  }
+
+  /**
+   * Registers the response being read so that cancellation can abort it.
+   * @throws CancellationException if the read was already cancelled, after aborting the response
+   */
+  public void attach(Abortable response) {
+    this.response = response;
+    if (isCancelled()) {
+      response.abort();
+      throw new CancellationException();
+    }
+  }
+
+  /**
+   * @throws CancellationException if the read was cancelled, so no new attempt is started
+   */
+  public void checkNotCancelled() {
+    if (isCancelled()) {
+      throw new CancellationException();
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    boolean cancelled = super.cancel(mayInterruptIfRunning);
+    if (cancelled) {
+      CompletableFuture<Void> pendingPermit = permit;
+      if (pendingPermit != null) {
+        pendingPermit.cancel(false);
+      }
+      if (!drop()) {
+        Abortable inFlight = response;
+        if (inFlight != null) {
+          inFlight.abort();
+        }
+        Future<?> runningTask = task;
+        if (runningTask != null) {
+          runningTask.cancel(true);
+        }
+      }
+    }
+    return cancelled;
+  }
+
+  /**
+   * Drops the read if it has not started running.
+   * @return true if it was dropped, false if it is already running
+   */
+  private boolean drop() {
+    if (state.compareAndSet(NEW, DROPPED)) {
+      onFinished.run();
+      return true;
+    }
+    return state.get() == DROPPED;
+  }
+}
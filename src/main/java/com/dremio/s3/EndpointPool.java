@@ -0,0 +1,294 @@
+package com.dremio.s3;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.s3.connection.GetS3Client;
+import com.dremio.utills.NamedThreadFactory;
+
+import software.amazon.awssdk.services.s3.S3Client;
+
+/**
+ * Spreads requests over several endpoints serving the same buckets, each with a client and connection pool
+ * of its own, so the aggregate throughput is not bound by what a single server address sustains.
+ * <p>
+ * The endpoints are either the comma separated endpoints configured, or the addresses the endpoint host
+ * resolves to, with every connection of an address pinned to it while TLS and signing still use the host
+ * name. Addresses are resolved again periodically and new ones are added while fewer than the maximum are
+ * healthy. Each request goes to the healthy endpoint with the lowest expected wait, the requests in flight
+ * on it times its moving average latency. An endpoint is ejected for a while after consecutive failures,
+ * or when its latency is a multiple of the median of the others, as long as another endpoint is left.
+ */
+public final class EndpointPool implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(EndpointPool.class);
+  private static final ScheduledExecutorService refresher =
+    Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("s3-endpoint-refresh-"));
+
+  private static final double LATENCY_WEIGHT = 0.2;
+  private static final int FAILURES_TO_EJECT = 3;
+  // latency samples an endpoint needs before it can be ejected for being slow
+  private static final int MIN_SAMPLES_TO_EJECT = 20;
+
+  private static volatile EndpointPool shared;
+
+  private final S3Configs s3Configs;
+  private final String host;
+  private final int maxAddresses;
+  private final long ejectNanos;
+  private final double ejectLatencyFactor;
+  private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+
+  /**
+   * @return the process-wide pool, or null when only a single endpoint is configured and per-address
+   * spreading is disabled
+   */
+  public static EndpointPool shared(S3Configs s3Configs) {
+    if (s3Configs.getEndpoints().size() < 2 && !s3Configs.isEndpointPerAddress()) {
+      return null;
+    }
+    if (shared == null) {
+      synchronized (EndpointPool.class) {
+        if (shared == null) {
+          shared = new EndpointPool(s3Configs);
+        }
+      }
+    }
+    return shared;
+  }
+
+  private EndpointPool(S3Configs s3Configs) {
+    this.s3Configs = s3Configs;
+    this.maxAddresses = Math.max(s3Configs.getMaxEndpointAddresses(), 1);
+    this.ejectNanos = TimeUnit.SECONDS.toNanos(s3Configs.getEndpointEjectSeconds());
+    this.ejectLatencyFactor = s3Configs.getEndpointEjectLatencyFactor();
+    if (s3Configs.isEndpointPerAddress()) {
+      final String endpoint = s3Configs.getEndpoint();
+      this.host = endpoint == null
+        ? s3Configs.getBucket() + ".s3." + s3Configs.getRegion() + ".amazonaws.com"
+        : URI.create(endpoint).getHost();
+      resolve();
+      if (endpoints.isEmpty()) {
+        throw new IllegalStateException("No address found for " + host);
+      }
+      final long refreshSeconds = s3Configs.getEndpointRefreshSeconds();
+      if (refreshSeconds > 0) {
+        refresher.scheduleWithFixedDelay(this::resolve, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+      }
+    } else {
+      this.host = null;
+      for (String endpoint : s3Configs.getEndpoints()) {
+        endpoints.add(new Endpoint(endpoint, GetS3Client.getSyncClient(s3Configs.withEndpoint(endpoint))));
+      }
+    }
+    logger.info("Spreading requests over {} endpoints: {}", endpoints.size(), endpoints);
+  }
+
+  /**
+   * Picks the endpoint for the next request, which must be handed back with {@link #release}.
+   */
+  public Endpoint acquire() {
+    return acquire(Collections.emptySet());
+  }
+
+  /**
+   * @param tried endpoints a failed request was already sent to, never picked again
+   * @return the endpoint, or null if every endpoint has been tried
+   */
+  public Endpoint acquire(Set<Endpoint> tried) {
+    final long now = System.nanoTime();
+    double knownLatency = Double.MAX_VALUE;
+    for (Endpoint endpoint : endpoints) {
+      if (endpoint.latencyNanos > 0) {
+        knownLatency = Math.min(knownLatency, endpoint.latencyNanos);
+      }
+    }
+    // endpoints without samples yet are assumed to be as fast as the fastest, so they get tried
+    final double unknownLatency = knownLatency == Double.MAX_VALUE ? 1 : knownLatency;
+    Endpoint best = null;
+    double bestScore = Double.MAX_VALUE;
+    Endpoint leastEjected = null;
+    for (Endpoint endpoint : endpoints) {
+      if (tried.contains(endpoint)) {
+        continue;
+      }
+      if (endpoint.isEjected(now)) {
+        if (leastEjected == null || endpoint.ejectedUntilNanos < leastEjected.ejectedUntilNanos) {
+          leastEjected = endpoint;
+        }
+        continue;
+      }
+      final double latency = endpoint.latencyNanos > 0 ? endpoint.latencyNanos : unknownLatency;
+      final double score = (endpoint.inFlight.get() + 1) * latency;
+      if (score < bestScore) {
+        best = endpoint;
+        bestScore = score;
+      }
+    }
+    // all left are ejected, use the one that comes back first
+    final Endpoint chosen = best != null ? best : leastEjected;
+    if (chosen == null) {
+      return null;
+    }
+    chosen.inFlight.incrementAndGet();
+    return chosen;
+  }
+
+  /**
+   * @param nanos time the request took
+   * @param failed true if the request failed in a way that points at the endpoint, like a connection
+   *               error or a 5xx response, rather than at the request
+   */
+  public void release(Endpoint endpoint, long nanos, boolean failed) {
+    endpoint.inFlight.decrementAndGet();
+    endpoint.requests.incrementAndGet();
+    final long now = System.nanoTime();
+    synchronized (endpoint) {
+      if (endpoint.isEjected(now)) {
+        return;
+      }
+      if (endpoint.ejectedUntilNanos != 0) {
+        // back from ejection, start over
+        endpoint.ejectedUntilNanos = 0;
+        endpoint.failures = 0;
+        endpoint.samples = 0;
+        endpoint.latencyNanos = 0;
+      }
+      if (failed) {
+        if (++endpoint.failures >= FAILURES_TO_EJECT) {
+          eject(endpoint, now, endpoint.failures + " consecutive failures");
+        }
+        return;
+      }
+      endpoint.failures = 0;
+      endpoint.samples++;
+      endpoint.latencyNanos = endpoint.latencyNanos == 0
+        ? nanos
+        : endpoint.latencyNanos + LATENCY_WEIGHT * (nanos - endpoint.latencyNanos);
+    }
+    if (endpoint.samples >= MIN_SAMPLES_TO_EJECT) {
+      final double median = medianLatencyOfOthers(endpoint, now);
+      if (median > 0 && endpoint.latencyNanos > ejectLatencyFactor * median) {
+        synchronized (endpoint) {
+          eject(endpoint, now, String.format("latency %.1f ms against a median of %.1f ms", endpoint.latencyNanos / 1e6, median / 1e6));
+        }
+      }
+    }
+  }
+
+  private void eject(Endpoint endpoint, long now, String reason) {
+    for (Endpoint other : endpoints) {
+      if (other != endpoint && !other.isEjected(now)) {
+        endpoint.ejectedUntilNanos = now + ejectNanos;
+        logger.warn("Ejected endpoint {} for {} s: {}", endpoint, TimeUnit.NANOSECONDS.toSeconds(ejectNanos), reason);
+        return;
+      }
+    }
+    // never eject the last healthy endpoint
+  }
+
+  private double medianLatencyOfOthers(Endpoint endpoint, long now) {
+    final List<Double> latencies = new ArrayList<>();
+    for (Endpoint other : endpoints) {
+      if (other != endpoint && !other.isEjected(now) && other.latencyNanos > 0) {
+        latencies.add(other.latencyNanos);
+      }
+    }
+    if (latencies.isEmpty()) {
+      return 0;
+    }
+    latencies.sort(null);
+    return latencies.get(latencies.size() / 2);
+  }
+
+  /**
+   * Adds the addresses of the host not in the pool yet, while fewer than the maximum are healthy.
+   */
+  private synchronized void resolve() {
+    final InetAddress[] addresses;
+    try {
+      addresses = InetAddress.getAllByName(host);
+    } catch (UnknownHostException e) {
+      logger.warn("Unable to resolve {}", host, e);
+      return;
+    }
+    final long now = System.nanoTime();
+    int healthy = (int) endpoints.stream().filter(e -> !e.isEjected(now)).count();
+    // ejected addresses stay in the pool to come back, but the pool does not grow without bound
+    final int limit = 2 * maxAddresses;
+    for (InetAddress address : addresses) {
+      if (healthy >= maxAddresses || endpoints.size() >= limit) {
+        break;
+      }
+      final String name = host + "/" + address.getHostAddress();
+      if (endpoints.stream().noneMatch(e -> e.name.equals(name))) {
+        endpoints.add(new Endpoint(name, GetS3Client.getSyncClient(s3Configs, address)));
+        healthy++;
+        logger.debug("Added endpoint {} from {}", name, Arrays.toString(addresses));
+      }
+    }
+  }
+
+  public int size() {
+    return endpoints.size();
+  }
+
+  public void logSummary() {
+    final long now = System.nanoTime();
+    endpoints.forEach(e -> logger.info("Endpoint {}: {} requests, latency {} ms{}", e, e.requests.get(),
+      String.format("%.1f", e.latencyNanos / 1e6), e.isEjected(now) ? ", ejected" : ""));
+  }
+
+  @Override
+  public void close() {
+    endpoints.forEach(e -> e.client.close());
+  }
+
+  /**
+   * An endpoint with its own client and connection pool, and the load and health the pool tracks for it.
+   */
+  public static final class Endpoint {
+    private final String name;
+    private final S3Client client;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    // guarded by this, read without the lock for picking endpoints
+    private volatile double latencyNanos;
+    private volatile long ejectedUntilNanos;
+    private volatile long samples;
+    private int failures;
+
+    Endpoint(String name, S3Client client) {
+      this.name = name;
+      this.client = client;
+    }
+
+    public S3Client client() {
+      return client;
+    }
+
+    boolean isEjected(long now) {
+      final long until = ejectedUntilNanos;
+      return until != 0 && now - until < 0;
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package com.dremio.s3;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.reader.AsyncByteReader;
+import com.dremio.reader.ObjectTail;
+import com.dremio.reader.PriorityReadExecutor;
+import com.dremio.reader.ReadPriority;
+import com.dremio.s3.S3AsyncByteReaderUsingSyncClient.RetryableInvoker;
+
+import io.netty.buffer.ByteBuf;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Range reads of one object through {@link LeanS3Client}, signed and sent without the SDK, with the body read
+ * straight into the destination buffer.
+ * <p>
+ * Reads run on the executor like those of {@link S3AsyncByteReaderUsingSyncClient}, are shaped and retried the
+ * same way and can be cancelled, which closes their connection. Error responses are surfaced as S3 exceptions
+ * with their status code, so throttling is backed off from as for the SDK reader.
+ */
+public final class LeanS3ByteReader implements AsyncByteReader {
+  private static final Logger logger = LoggerFactory.getLogger(LeanS3ByteReader.class);
+  private static final int PARTIAL_CONTENT = 206;
+  private static final int OK = 200;
+  private static final int NOT_FOUND = 404;
+  private static final int RANGE_NOT_SATISFIABLE = 416;
+  private static final int SLOW_DOWN = 503;
+
+  private final LeanS3Client client;
+  private final ExecutorService executor;
+  private final String path;
+  private final RequestRateShaper shaper;
+  private final String shapingKey;
+
+  public LeanS3ByteReader(LeanS3Client client, S3Configs s3Configs, ExecutorService executor) {
+    this.client = client;
+    this.executor = executor;
+    this.path = s3Configs.getPath();
+    this.shaper = RequestRateShaper.shared(s3Configs);
+    this.shapingKey = RequestRateShaper.key(s3Configs.getBucket(), s3Configs.getPath());
+  }
+
+  @Override
+  public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset) {
+    return readFully(offset, len, dst, dstOffset, ReadPriority.BULK);
+  }
+
+  @Override
+  public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset, ReadPriority priority) {
+    dst.retain();
+    final CancellableRead<Void> future = new CancellableRead<>(dst::release);
+    final String range = "bytes=" + offset + "-" + (offset + len - 1);
+    final RetryableInvoker invoker = new RetryableInvoker(1, shaper, shapingKey);
+    return future.start(permit(), PriorityReadExecutor.withPriority(executor, priority), () -> {
+      try {
+        return invoker.invoke(() -> {
+          future.checkNotCancelled();
+          final LeanS3Client.Response response = client.get(path, range, connection -> future.attach(connection::close));
+          try {
+            check(response, range);
+            if (response.status() == OK && offset != 0) {
+              throw new IOException("Range " + range + " of " + path + " was answered with the whole object");
+            }
+            if (response.contentLength() != len) {
+              throw new CompletionException(new EOFException("Read " + response.contentLength() + " of " + len + " bytes at "
+                + offset + " of " + path));
+            }
+            // the body lands in dst, the lean path is to skip the copy the SDK response stream makes
+            response.readBody(dst.nioBuffer(dstOffset, len));
+            response.finish();
+            return null;
+          } catch (IOException | RuntimeException e) {
+            response.abort();
+            throw e;
+          }
+        });
+      } catch (Exception e) {
+        throw failure(e, range, future.isCancelled());
+      }
+    });
+  }
+
+  @Override
+  public CompletableFuture<ObjectTail> readTail(int len) {
+    final CancellableRead<ObjectTail> future = new CancellableRead<>(() -> { });
+    final String range = "bytes=-" + len;
+    final RetryableInvoker invoker = new RetryableInvoker(1, shaper, shapingKey);
+    return future.start(permit(), PriorityReadExecutor.withPriority(executor, ReadPriority.METADATA), () -> {
+      try {
+        return invoker.invoke(() -> {
+          future.checkNotCancelled();
+          final LeanS3Client.Response response = client.get(path, range, connection -> future.attach(connection::close));
+          try {
+            check(response, range);
+            final long objectLength = objectLength(response);
+            final byte[] tail = new byte[(int) response.contentLength()];
+            response.readBody(ByteBuffer.wrap(tail));
+            response.finish();
+            return new ObjectTail(tail, objectLength, response.eTag());
+          } catch (IOException | RuntimeException e) {
+            response.abort();
+            throw e;
+          }
+        });
+      } catch (Exception e) {
+        throw failure(e, range, future.isCancelled());
+      }
+    });
+  }
+
+  private CompletableFuture<Void> permit() {
+    return shaper == null ? CompletableFuture.completedFuture(null) : shaper.acquire(shapingKey);
+  }
+
+  private void check(LeanS3Client.Response response, String range) throws IOException {
+    final int status = response.status();
+    if (status == PARTIAL_CONTENT || status == OK) {
+      return;
+    }
+    final String body = response.readErrorBody();
+    switch (status) {
+      // wrapped so that they are not retried
+      case NOT_FOUND:
+        throw new CompletionException(new FileNotFoundException("File not found " + path));
+      case RANGE_NOT_SATISFIABLE:
+        throw new CompletionException(new EOFException("Range " + range + " starts past the end of " + path));
+      default:
+        if (status >= 500 && status != SLOW_DOWN) {
+          // retried once like the SDK reader retries server errors
+          throw new IOException("Request for " + path + " " + range + " failed with " + status + ": " + body);
+        }
+        throw (S3Exception) S3Exception.builder().statusCode(status)
+          .message("Request for " + path + " " + range + " failed with " + status + ": " + body).build();
+    }
+  }
+
+  /**
+   * @return the object length from a Content-Range of the form "bytes first-last/length"
+   */
+  private long objectLength(LeanS3Client.Response response) throws IOException {
+    final String contentRange = response.contentRange();
+    if (response.status() == OK) {
+      return response.contentLength();
+    }
+    final int slash = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+    if (slash < 0 || contentRange.endsWith("*")) {
+      throw new IOException("Missing object length in Content-Range " + contentRange + " of " + path);
+    }
+    return Long.parseLong(contentRange.substring(slash + 1).trim());
+  }
+
+  private CompletionException failure(Exception e, String range, boolean cancelled) {
+    if (e instanceof CompletionException) {
+      return (CompletionException) e;
+    }
+    // a cancelled read fails on its closed connection, which is expected
+    if (!cancelled) {
+      logger.error("Request for path {} {} failed", path, range, e);
+    }
+    return new CompletionException(e);
+  }
+}
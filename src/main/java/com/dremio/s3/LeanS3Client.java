@@ -0,0 +1,458 @@
+package com.dremio.s3;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A minimal HTTP/1.1 client for signed S3 GETs that bypasses the SDK: no interceptors, marshalling or
+ * response objects, a request is a few hundred bytes written to a pooled connection and the body is read
+ * straight into the caller's buffer.
+ * <p>
+ * Plain connections are non-blocking {@link SocketChannel}s waited on with a selector of their own, so reads
+ * time out and can be aborted from another thread, and bodies go from the socket into direct buffers without
+ * a copy on the heap. TLS connections go through the JDK {@link SSLSocket} with hostname verification.
+ * Idle connections are kept up to the pool size and reused most recently used first; a request failing on a
+ * reused connection, which the server may have closed meanwhile, is sent again on a new one.
+ */
+public final class LeanS3Client implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(LeanS3Client.class);
+  private static final int HEADER_BUFFER_SIZE = 16 * 1024;
+  private static final int MAX_ERROR_BODY = 4 * 1024;
+  private static final int COPY_CHUNK_SIZE = 64 * 1024;
+  private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(100);
+  // S3 closes connections idle for a few seconds, reusing older ones would mostly fail
+  private static final long MAX_IDLE_NANOS = TimeUnit.SECONDS.toNanos(4);
+  private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+  private static final ThreadLocal<byte[]> copyChunk = ThreadLocal.withInitial(() -> new byte[COPY_CHUNK_SIZE]);
+
+  private final String host;
+  private final int port;
+  private final boolean tls;
+  private final String hostHeader;
+  private final String bucketPath;
+  private final SigV4Signer signer;
+  private final int maxIdle;
+  private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger opened = new AtomicInteger();
+  private volatile boolean closed;
+
+  /**
+   * @param maxIdle connections kept open between requests, usually the number of reads in flight
+   */
+  public LeanS3Client(S3Configs s3Configs, int maxIdle) {
+    final String endpoint = s3Configs.getEndpoint();
+    if (endpoint == null) {
+      // virtual hosted style, as the SDK addresses AWS
+      this.host = s3Configs.getBucket() + ".s3." + s3Configs.getRegion() + ".amazonaws.com";
+      this.tls = true;
+      this.port = 443;
+      this.bucketPath = "";
+    } else {
+      // path style, as GetS3Client configures custom endpoints
+      final URI uri = URI.create(endpoint);
+      this.host = uri.getHost();
+      this.tls = "https".equalsIgnoreCase(uri.getScheme());
+      this.port = uri.getPort() > 0 ? uri.getPort() : tls ? 443 : 80;
+      this.bucketPath = "/" + SigV4Signer.encodePath(s3Configs.getBucket());
+    }
+    this.hostHeader = port == (tls ? 443 : 80) ? host : host + ":" + port;
+    this.signer = new SigV4Signer(s3Configs.getAccessKey(), s3Configs.getSecretKey(), s3Configs.getRegion());
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * Sends a signed GET of the object and reads the response headers. The body is left to be read from the
+   * returned response, which must then be finished or aborted.
+   * @param range Range header value, or null for the whole object
+   * @param abortHook called with the connection before the request is sent, to abort it from another thread
+   */
+  Response get(String key, String range, Consumer<Connection> abortHook) throws IOException {
+    final String path = bucketPath + "/" + SigV4Signer.encodePath(key);
+    final String amzDate = signer.amzDate(System.currentTimeMillis());
+    final StringBuilder request = new StringBuilder(512)
+      .append("GET ").append(path).append(" HTTP/1.1\r\n")
+      .append("Host: ").append(hostHeader).append("\r\n")
+      .append("x-amz-date: ").append(amzDate).append("\r\n")
+      .append("x-amz-content-sha256: ").append(SigV4Signer.UNSIGNED_PAYLOAD).append("\r\n")
+      .append("Authorization: ").append(signer.authorization(hostHeader, path, amzDate)).append("\r\n");
+    if (range != null) {
+      request.append("Range: ").append(range).append("\r\n");
+    }
+    final byte[] requestBytes = request.append("\r\n").toString().getBytes(StandardCharsets.ISO_8859_1);
+
+    Connection connection = acquire();
+    try {
+      abortHook.accept(connection);
+      return exchange(connection, requestBytes);
+    } catch (IOException e) {
+      connection.close();
+      if (!connection.reused || closed) {
+        throw e;
+      }
+      logger.debug("Request on a reused connection to {} failed, sending it on a new one", hostHeader, e);
+    } catch (RuntimeException e) {
+      connection.close();
+      throw e;
+    }
+    connection = open();
+    try {
+      abortHook.accept(connection);
+      return exchange(connection, requestBytes);
+    } catch (IOException | RuntimeException e) {
+      connection.close();
+      throw e;
+    }
+  }
+
+  private Response exchange(Connection connection, byte[] requestBytes) throws IOException {
+    connection.write(ByteBuffer.wrap(requestBytes));
+    final ByteBuffer header = connection.header;
+    header.clear();
+    int end;
+    int scanFrom = 0;
+    while ((end = indexOf(header, scanFrom)) < 0) {
+      if (!header.hasRemaining()) {
+        throw new IOException("Response headers from " + hostHeader + " exceed " + HEADER_BUFFER_SIZE + " bytes");
+      }
+      scanFrom = Math.max(0, header.position() - HEADER_END.length + 1);
+      if (connection.read(header) < 0) {
+        throw new EOFException("Connection to " + hostHeader + " closed before the response headers");
+      }
+    }
+    final String headers = new String(header.array(), 0, end, StandardCharsets.ISO_8859_1);
+    // leave the body bytes read along with the headers to be consumed first
+    header.limit(header.position()).position(end + HEADER_END.length);
+    return new Response(connection, headers);
+  }
+
+  private static int indexOf(ByteBuffer buffer, int from) {
+    final byte[] bytes = buffer.array();
+    for (int i = from; i <= buffer.position() - HEADER_END.length; i++) {
+      if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the trimmed value of the header with the given lower case name, or null if absent
+   */
+  private static String header(String headers, String name) {
+    int lineStart = headers.indexOf("\r\n") + 2;
+    while (lineStart > 1 && lineStart < headers.length()) {
+      int lineEnd = headers.indexOf("\r\n", lineStart);
+      if (lineEnd < 0) {
+        lineEnd = headers.length();
+      }
+      final int colon = headers.indexOf(':', lineStart);
+      if (colon - lineStart == name.length() && colon < lineEnd && headers.regionMatches(true, lineStart, name, 0, name.length())) {
+        return headers.substring(colon + 1, lineEnd).trim();
+      }
+      lineStart = lineEnd + 2;
+    }
+    return null;
+  }
+
+  private Connection acquire() throws IOException {
+    final long now = System.nanoTime();
+    Connection connection;
+    while ((connection = idle.pollFirst()) != null) {
+      if (now - connection.idleSince < MAX_IDLE_NANOS) {
+        connection.reused = true;
+        return connection;
+      }
+      connection.close();
+    }
+    return open();
+  }
+
+  private void release(Connection connection) {
+    if (closed || idle.size() >= maxIdle) {
+      connection.close();
+      return;
+    }
+    connection.idleSince = System.nanoTime();
+    idle.addFirst(connection);
+  }
+
+  private Connection open() throws IOException {
+    if (closed) {
+      throw new IOException("Client is closed");
+    }
+    opened.incrementAndGet();
+    return tls ? Connection.tls(host, port) : Connection.plain(host, port);
+  }
+
+  /**
+   * @return connections opened so far, to tell how well they are reused
+   */
+  public int getOpenedConnections() {
+    return opened.get();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    Connection connection;
+    while ((connection = idle.pollFirst()) != null) {
+      connection.close();
+    }
+  }
+
+  /**
+   * Status and headers of a response, with its body still to be read from the connection.
+   */
+  final class Response {
+    private final Connection connection;
+    private final int status;
+    private final long contentLength;
+    private final String contentRange;
+    private final String eTag;
+    private final boolean keepAlive;
+    private long bodyRead;
+
+    Response(Connection connection, String headers) throws IOException {
+      this.connection = connection;
+      final int firstSpace = headers.indexOf(' ');
+      if (!headers.startsWith("HTTP/1.") || firstSpace < 0 || headers.length() < firstSpace + 4) {
+        throw new IOException("Malformed status line from " + hostHeader);
+      }
+      this.status = Integer.parseInt(headers.substring(firstSpace + 1, firstSpace + 4));
+      final String length = header(headers, "content-length");
+      if (length == null) {
+        // S3 sends a length with every GET response, a chunked or delimited body is not worth supporting here
+        throw new IOException("Response " + status + " from " + hostHeader + " without a Content-Length");
+      }
+      this.contentLength = Long.parseLong(length);
+      this.contentRange = header(headers, "content-range");
+      this.eTag = header(headers, "etag");
+      this.keepAlive = !"close".equalsIgnoreCase(header(headers, "connection"));
+    }
+
+    int status() {
+      return status;
+    }
+
+    long contentLength() {
+      return contentLength;
+    }
+
+    String contentRange() {
+      return contentRange;
+    }
+
+    String eTag() {
+      return eTag;
+    }
+
+    /**
+     * Reads the next dst.remaining() bytes of the body into dst.
+     */
+    void readBody(ByteBuffer dst) throws IOException {
+      final int len = dst.remaining();
+      if (bodyRead + len > contentLength) {
+        throw new EOFException("Body of " + contentLength + " bytes, " + (bodyRead + len) + " requested");
+      }
+      final ByteBuffer buffered = connection.header;
+      if (buffered.hasRemaining()) {
+        final int n = Math.min(buffered.remaining(), len);
+        final int limit = buffered.limit();
+        buffered.limit(buffered.position() + n);
+        dst.put(buffered);
+        buffered.limit(limit);
+      }
+      while (dst.hasRemaining()) {
+        if (connection.read(dst) < 0) {
+          throw new EOFException("Connection to " + hostHeader + " closed after " + (bodyRead + len - dst.remaining())
+            + " of " + contentLength + " bytes");
+        }
+      }
+      bodyRead += len;
+    }
+
+    /**
+     * @return up to the first few KB of the body, for error messages
+     */
+    String readErrorBody() {
+      try {
+        final ByteBuffer body = ByteBuffer.allocate((int) Math.min(contentLength, MAX_ERROR_BODY));
+        readBody(body);
+        return new String(body.array(), 0, body.position(), StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        return "";
+      }
+    }
+
+    /**
+     * Returns the connection to the pool if the body was read to its end, closes it otherwise.
+     */
+    void finish() {
+      if (keepAlive && bodyRead == contentLength && !connection.header.hasRemaining()) {
+        release(connection);
+      } else {
+        connection.close();
+      }
+    }
+
+    void abort() {
+      connection.close();
+    }
+  }
+
+  /**
+   * A connection to the endpoint, with the buffer its response headers are read into.
+   */
+  static final class Connection {
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_BUFFER_SIZE);
+    private volatile boolean closed;
+    private boolean reused;
+    private long idleSince;
+
+    private Connection(SocketChannel channel, Selector selector, Socket socket) throws IOException {
+      this.channel = channel;
+      this.selector = selector;
+      this.key = channel == null ? null : channel.register(selector, 0);
+      this.socket = socket;
+      this.in = socket == null ? null : socket.getInputStream();
+      this.out = socket == null ? null : socket.getOutputStream();
+    }
+
+    static Connection plain(String host, int port) throws IOException {
+      final SocketChannel channel = SocketChannel.open();
+      Selector selector = null;
+      try {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.socket().connect(new InetSocketAddress(host, port), (int) TIMEOUT_MILLIS);
+        channel.configureBlocking(false);
+        selector = Selector.open();
+        return new Connection(channel, selector, null);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        if (selector != null) {
+          selector.close();
+        }
+        throw e;
+      }
+    }
+
+    static Connection tls(String host, int port) throws IOException {
+      final Socket plain = new Socket();
+      try {
+        plain.setTcpNoDelay(true);
+        plain.connect(new InetSocketAddress(host, port), (int) TIMEOUT_MILLIS);
+        final SSLSocket socket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(plain, host, port, true);
+        final SSLParameters parameters = socket.getSSLParameters();
+        parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        socket.setSSLParameters(parameters);
+        socket.setSoTimeout((int) TIMEOUT_MILLIS);
+        socket.startHandshake();
+        return new Connection(null, null, socket);
+      } catch (IOException | RuntimeException e) {
+        plain.close();
+        throw e;
+      }
+    }
+
+    int read(ByteBuffer dst) throws IOException {
+      if (channel == null) {
+        final byte[] chunk = dst.hasArray() ? dst.array() : copyChunk.get();
+        final int offset = dst.hasArray() ? dst.arrayOffset() + dst.position() : 0;
+        final int n = in.read(chunk, offset, Math.min(dst.remaining(), dst.hasArray() ? dst.remaining() : chunk.length));
+        if (n > 0) {
+          if (dst.hasArray()) {
+            dst.position(dst.position() + n);
+          } else {
+            dst.put(chunk, 0, n);
+          }
+        }
+        return n;
+      }
+      int n;
+      while ((n = channel.read(dst)) == 0) {
+        await(SelectionKey.OP_READ);
+      }
+      return n;
+    }
+
+    void write(ByteBuffer src) throws IOException {
+      if (channel == null) {
+        out.write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+        out.flush();
+        src.position(src.limit());
+        return;
+      }
+      while (src.hasRemaining()) {
+        if (channel.write(src) == 0) {
+          await(SelectionKey.OP_WRITE);
+        }
+      }
+    }
+
+    private void await(int op) throws IOException {
+      key.interestOps(op);
+      final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+      while (selector.select(TIMEOUT_MILLIS) == 0) {
+        if (closed) {
+          throw new AsynchronousCloseException();
+        }
+        if (Thread.interrupted()) {
+          throw new InterruptedIOException("Interrupted while waiting for the connection");
+        }
+        if (System.nanoTime() - deadline >= 0) {
+          throw new SocketTimeoutException("No progress on the connection for " + TIMEOUT_MILLIS + " ms");
+        }
+      }
+      selector.selectedKeys().clear();
+    }
+
+    /**
+     * Closes the connection, failing a read or write blocked on it in another thread.
+     */
+    void close() {
+      closed = true;
+      try {
+        if (channel != null) {
+          selector.wakeup();
+          channel.close();
+          selector.close();
+        } else {
+          socket.close();
+        }
+      } catch (IOException e) {
+        logger.debug("Error closing connection", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package com.dremio.s3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.utills.Crc32c;
+
+/**
+ * Collects the CRC32C of every range read from an object, computed while the bytes are copied into the
+ * destination buffer, and combines them into the checksum of the whole object once it has been read.
+ * Also keeps track of the time spent checksumming so the overhead can be reported.
+ */
+public class ObjectChecksumVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObjectChecksumVerifier.class);
+
+    // range offset to {length, crc}
+    private final Map<Long, long[]> ranges = new ConcurrentSkipListMap<>();
+    private final LongAdder checksumNanos = new LongAdder();
+    private final LongAdder checksummedBytes = new LongAdder();
+
+    public void recordRange(long offset, long len, long crc) {
+        ranges.put(offset, new long[]{len, crc});
+    }
+
+    public void recordOverhead(long nanos, long bytes) {
+        checksumNanos.add(nanos);
+        checksummedBytes.add(bytes);
+    }
+
+    /**
+     * @return the CRC32C of the first objectLength bytes, or -1 if the ranges read do not cover them contiguously
+     */
+    public long combinedChecksum(long objectLength) {
+        long crc = 0;
+        long covered = 0;
+        for (Map.Entry<Long, long[]> range : ranges.entrySet()) {
+            if (covered >= objectLength) {
+                break;
+            }
+            if (range.getKey() != covered) {
+                return -1;
+            }
+            long len = range.getValue()[0];
+            crc = covered == 0 ? range.getValue()[1] : Crc32c.combine(crc, range.getValue()[1], len);
+            covered += len;
+        }
+        return covered == objectLength ? crc : -1;
+    }
+
+    /**
+     * Compares the checksum of the ranges read with the full object CRC32C stored by S3.
+     * @param expectedBase64 the x-amz-checksum-crc32c value, null or composite checksums can not be compared
+     * @return true if the object was verified, false if there was nothing to verify against
+     * @throws IOException if the checksums do not match
+     */
+    public boolean verify(String path, long objectLength, String expectedBase64) throws IOException {
+        if (expectedBase64 == null || expectedBase64.contains("-")) {
+            logger.warn("No full object CRC32C stored for {}, only range checksums were computed", path);
+            return false;
+        }
+        long actual = combinedChecksum(objectLength);
+        if (actual < 0) {
+            logger.warn("Ranges read from {} do not cover the whole object, unable to verify its checksum", path);
+            return false;
+        }
+        long expected = ByteBuffer.wrap(Base64.getDecoder().decode(expectedBase64)).getInt() & 0xFFFFFFFFL;
+        if (actual != expected) {
+            throw new IOException(String.format("CRC32C mismatch for %s, expected %08x but read %08x", path, expected, actual));
+        }
+        logger.info("Verified CRC32C {} of {} bytes of {}", String.format("%08x", actual), objectLength, path);
+        return true;
+    }
+
+    public long getChecksummedBytes() {
+        return checksummedBytes.sum();
+    }
+
+    public long getChecksumNanos() {
+        return checksumNanos.sum();
+    }
+
+    public void logOverhead() {
+        long bytes = checksummedBytes.sum();
+        long nanos = checksumNanos.sum();
+        logger.info("CRC32C ({}) checksummed {} bytes in {} ms of CPU, {} MB/s per core", Crc32c.isIntrinsic() ? "intrinsic" : "table driven",
+                bytes, TimeUnit.NANOSECONDS.toMillis(nanos), nanos == 0 ? 0 : bytes * 1000 / nanos);
+    }
+}
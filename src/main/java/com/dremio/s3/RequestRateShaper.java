@@ -0,0 +1,168 @@
+package com.dremio.s3;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.utills.NamedThreadFactory;
+
+/**
+ * Token bucket rate shaper for S3 requests keyed by bucket and key prefix, to stay under the per-prefix
+ * request rate of S3 partitions.
+ * <p>
+ * Each prefix is a lock-free generic cell rate algorithm: a request reserves the next slot with a single
+ * CAS and only requests beyond the burst are delayed, by completing their future from a timer instead of
+ * blocking a thread. The rate starts at the configured maximum, is halved on throttle responses and
+ * recovers linearly back to the maximum, so it settles around the sustainable rate of the prefix.
+ */
+public final class RequestRateShaper {
+  private static final Logger logger = LoggerFactory.getLogger(RequestRateShaper.class);
+  private static final ScheduledExecutorService timer =
+    Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("s3-rate-shaper-"));
+
+  // fraction of the maximum rate recovered per second after a throttle
+  private static final double RECOVERY_PER_SECOND = 0.05;
+  // throttles within this window after a decrease count as the same congestion event
+  private static final long DECREASE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+  private static final double MIN_RATE = 1;
+
+  private static volatile RequestRateShaper shared;
+
+  private final double maxRate;
+  private final int burst;
+  private final ConcurrentHashMap<String, PrefixBucket> buckets = new ConcurrentHashMap<>();
+
+  /**
+   * @param maxRate maximum requests per second per prefix
+   * @param burst number of requests per prefix that may be sent at once without delay
+   */
+  public RequestRateShaper(double maxRate, int burst) {
+    this.maxRate = maxRate;
+    this.burst = Math.max(burst, 1);
+  }
+
+  /**
+   * @return the process-wide shaper, configured from the first configs it is requested with, or null when
+   * rate shaping is disabled
+   */
+  public static RequestRateShaper shared(S3Configs s3Configs) {
+    if (s3Configs.getRequestsPerPrefix() <= 0) {
+      return null;
+    }
+    if (shared == null) {
+      synchronized (RequestRateShaper.class) {
+        if (shared == null) {
+          shared = new RequestRateShaper(s3Configs.getRequestsPerPrefix(), s3Configs.getRequestBurst());
+        }
+      }
+    }
+    return shared;
+  }
+
+  /**
+   * S3 partitions request rates by key prefix, the key up to its last delimiter.
+   */
+  public static String key(String bucket, String path) {
+    int slash = path.lastIndexOf('/');
+    return bucket + "/" + (slash < 0 ? "" : path.substring(0, slash + 1));
+  }
+
+  /**
+   * @return a future that completes when a request for the given prefix may be sent
+   */
+  public CompletableFuture<Void> acquire(String key) {
+    long delayNanos = bucket(key).reserve();
+    if (delayNanos <= 0) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> permit = new CompletableFuture<>();
+    timer.schedule(() -> permit.complete(null), delayNanos, TimeUnit.NANOSECONDS);
+    return permit;
+  }
+
+  /**
+   * Lowers the rate of the prefix after S3 responded with 503 Slow Down.
+   */
+  public void onThrottle(String key) {
+    bucket(key).decrease();
+  }
+
+  public double currentRate(String key) {
+    return bucket(key).rate();
+  }
+
+  private PrefixBucket bucket(String key) {
+    PrefixBucket bucket = buckets.get(key);
+    return bucket != null ? bucket : buckets.computeIfAbsent(key, PrefixBucket::new);
+  }
+
+  private final class PrefixBucket {
+    private final String key;
+    // theoretical arrival time of the next request at the current rate
+    private final AtomicLong nextSlotNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastDecreaseNanos = new AtomicLong(System.nanoTime() - DECREASE_WINDOW_NANOS);
+    // the rate as double bits, so that recovery and decreases are applied with CAS and none is lost
+    private final AtomicLong rateBits = new AtomicLong(Double.doubleToRawLongBits(maxRate));
+    private final AtomicLong lastRecoveryNanos = new AtomicLong(System.nanoTime());
+
+    PrefixBucket(String key) {
+      this.key = key;
+    }
+
+    long reserve() {
+      long now = System.nanoTime();
+      long interval = (long) (TimeUnit.SECONDS.toNanos(1) / recover(now));
+      long burstTolerance = interval * burst;
+      while (true) {
+        long slot = nextSlotNanos.get();
+        long next = Math.max(slot, now) + interval;
+        if (nextSlotNanos.compareAndSet(slot, next)) {
+          return next - now - burstTolerance;
+        }
+      }
+    }
+
+    double rate() {
+      return Double.longBitsToDouble(rateBits.get());
+    }
+
+    private double recover(long now) {
+      // every caller recovers the time since the previous one, on top of whatever rate it finds
+      final double recovered = Math.max(0, now - lastRecoveryNanos.getAndSet(now)) / 1e9 * maxRate * RECOVERY_PER_SECOND;
+      while (true) {
+        final long bits = rateBits.get();
+        final double current = Double.longBitsToDouble(bits);
+        if (current >= maxRate) {
+          return current;
+        }
+        final double next = Math.min(maxRate, current + recovered);
+        if (rateBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+          return next;
+        }
+      }
+    }
+
+    void decrease() {
+      long now = System.nanoTime();
+      long last = lastDecreaseNanos.get();
+      if (now - last < DECREASE_WINDOW_NANOS || !lastDecreaseNanos.compareAndSet(last, now)) {
+        return;
+      }
+      double next;
+      while (true) {
+        final long bits = rateBits.get();
+        next = Math.max(MIN_RATE, Double.longBitsToDouble(bits) / 2);
+        if (rateBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+          break;
+        }
+      }
+      logger.warn("Throttled by S3 on prefix {}, lowering request rate to {} per second", key, String.format("%.1f", next));
+    }
+  }
+}
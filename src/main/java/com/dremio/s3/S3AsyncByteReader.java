@@ -0,0 +1,51 @@
+package com.dremio.s3;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.reader.AsyncByteReader;
+
+import io.netty.buffer.ByteBuf;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * AsyncByteReader on top of the S3 async client, used to compare it against {@link S3AsyncByteReaderUsingSyncClient}.
+ */
+public final class S3AsyncByteReader implements AsyncByteReader {
+  private static final Logger logger = LoggerFactory.getLogger(S3AsyncByteReader.class);
+
+  private final S3AsyncClient s3;
+  private final String bucket;
+  private final String path;
+
+  public S3AsyncByteReader(S3AsyncClient s3, S3Configs s3Configs) {
+    this.s3 = s3;
+    this.bucket = s3Configs.getBucket();
+    this.path = s3Configs.getPath();
+  }
+
+  @Override
+  public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dstBuf, int dstOffset) {
+    final GetObjectRequest request = GetObjectRequest.builder()
+      .bucket(bucket)
+      .key(path)
+      .range(String.format("bytes=%d-%d", offset, offset + len - 1))
+      .build();
+    logger.debug("Submitted async request for bucket {}, path {} for {}", bucket, path, request.range());
+    final ByteBufResponseTransformer transformer = new ByteBufResponseTransformer(dstBuf, dstOffset, len);
+    final CompletableFuture<GetObjectResponse> response = s3.getObject(request, transformer);
+    final CompletableFuture<Void> result = response.thenAccept(r -> {});
+    // thenAccept futures do not pass cancellation upstream, so abort the SDK request ourselves
+    result.whenComplete((v, e) -> {
+      if (result.isCancelled()) {
+        transformer.stop();
+        response.cancel(true);
+      }
+    });
+    return result;
+  }
+}
@@ -17,33 +17,53 @@ package com.dremio.s3;
 
 import static com.amazonaws.services.s3.internal.Constants.REQUESTER_PAYS;
 
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.Checksum;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.SdkBaseException;
 import com.amazonaws.services.s3.internal.Constants;
+import com.dremio.metrics.RequestPhaseTimer;
 import com.dremio.reader.AsyncByteReader;
+import com.dremio.reader.ObjectTail;
+import com.dremio.reader.PriorityReadExecutor;
+import com.dremio.reader.ReadPriority;
+import com.dremio.utills.Crc32c;
 import com.dremio.utills.NamedThreadFactory;
 import com.google.common.base.Stopwatch;
 
 import io.netty.buffer.ByteBuf;
 import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.exception.RetryableException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.utils.IoUtils;
 
 /**
  * The S3 async APIs are unstable. This is a replacement to use a wrapper around the sync APIs to
@@ -53,8 +73,16 @@ import software.amazon.awssdk.services.s3.model.S3Exception;
  */
 public final class S3AsyncByteReaderUsingSyncClient implements AsyncByteReader {
   private static final Logger logger = LoggerFactory.getLogger(S3AsyncByteReaderUsingSyncClient.class);
+  private static final int RANGE_NOT_SATISFIABLE_STATUS_CODE = 416;
+  private static final int SLOW_DOWN_STATUS_CODE = 503;
+  private static final String CHECKSUM_MODE_HEADER = "x-amz-checksum-mode";
+  private static final String CHECKSUM_CRC32C_HEADER = "x-amz-checksum-crc32c";
   private static final ExecutorService threadPool = Executors.newCachedThreadPool(new NamedThreadFactory("s3-read-"));
+  private static volatile PriorityReadExecutor priorityThreadPool;
+  private static final int COPY_CHUNK_SIZE = 64 * 1024;
+  private static final ThreadLocal<byte[]> copyChunk = ThreadLocal.withInitial(() -> new byte[COPY_CHUNK_SIZE]);
   private final S3Client s3;
+  private final ExecutorService executor;
   private final String bucket;
   private final String path;
   private final Instant instant;
@@ -63,9 +91,32 @@ public final class S3AsyncByteReaderUsingSyncClient implements AsyncByteReader {
   private final boolean ssecEnabled;
   private final String ssecKey;
   private final boolean shouldCheckTimestamp;
+  private final RequestRateShaper shaper;
+  private final String shapingKey;
+  private final ObjectChecksumVerifier verifier;
+  private final RequestPhaseTimer phaseTimer;
+  private final EndpointPool endpoints;
+  private volatile String pinnedETag;
 
   public S3AsyncByteReaderUsingSyncClient(S3Client s3, S3Configs s3Configs) {
+    this(s3, s3Configs, defaultExecutor(s3Configs));
+  }
+
+  /**
+   * @param executor runs the blocking S3 calls, which bounds the read concurrency
+   */
+  public S3AsyncByteReaderUsingSyncClient(S3Client s3, S3Configs s3Configs, ExecutorService executor) {
+    this(s3, s3Configs, executor, RequestRateShaper.shared(s3Configs));
+  }
+
+  /**
+   * @param shaper limits the request rate per key prefix, null to send requests unshaped
+   */
+  public S3AsyncByteReaderUsingSyncClient(S3Client s3, S3Configs s3Configs, ExecutorService executor, RequestRateShaper shaper) {
     this.s3 = s3;
+    this.shaper = shaper;
+    this.shapingKey = RequestRateShaper.key(s3Configs.getBucket(), s3Configs.getPath());
+    this.executor = executor;
     this.bucket = s3Configs.getBucket();
     this.path = s3Configs.getPath();
     long mtime = 0L;
@@ -75,12 +126,27 @@ public final class S3AsyncByteReaderUsingSyncClient implements AsyncByteReader {
     this.ssecEnabled = false;
     this.ssecKey = null;
     this.shouldCheckTimestamp = false;
+    this.verifier = s3Configs.isChecksumVerificationEnabled() ? new ObjectChecksumVerifier() : null;
+    this.phaseTimer = RequestPhaseTimer.shared(s3Configs);
+    this.endpoints = EndpointPool.shared(s3Configs);
   }
 
   public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dstBuf, int dstOffset) {
-    S3SyncReadObject readRequest = new S3SyncReadObject(offset, len, dstBuf, dstOffset);
+    return readFully(offset, len, dstBuf, dstOffset, ReadPriority.BULK);
+  }
+
+  @Override
+  public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dstBuf, int dstOffset, ReadPriority priority) {
+    // keep the destination alive until the read has stopped writing into it, even if the caller
+    // cancels the read and releases its reference first
+    dstBuf.retain();
+    final CancellableRead<Void> future = new CancellableRead<>(dstBuf::release);
+    S3SyncReadObject readRequest = new S3SyncReadObject(offset, len, dstBuf, dstOffset, future);
     logger.debug(String.format("[] Submitted request to queue for bucket {}, path {} for {}", threadName, bucket, path, range(offset, len)));
-    return CompletableFuture.runAsync(readRequest, threadPool);
+    return future.start(permit(), PriorityReadExecutor.withPriority(executor, priority), () -> {
+      readRequest.run();
+      return null;
+    });
   }
 
   @Override
@@ -88,22 +154,143 @@ public final class S3AsyncByteReaderUsingSyncClient implements AsyncByteReader {
     return AsyncByteReader.super.readFully(offset, len);
   }
 
+  @Override
+  public CompletableFuture<ObjectTail> readTail(int len) {
+    final CancellableRead<ObjectTail> future = new CancellableRead<>(() -> { });
+    S3SyncReadTail readRequest = new S3SyncReadTail(len, future);
+    logger.debug("[{}] Submitted tail request to queue for bucket {}, path {} for {}", threadName, bucket, path, suffixRange(len));
+    return future.start(permit(), PriorityReadExecutor.withPriority(executor, ReadPriority.METADATA), readRequest);
+  }
+
+  @Override
+  public CompletableFuture<InputStream> openStream(long offset, long len) {
+    final CancellableRead<InputStream> future = new CancellableRead<>(() -> { });
+    final GetObjectRequest request = newRequest(range(offset, len));
+    final RetryableInvoker invoker = new RetryableInvoker(1, shaper, shapingKey);
+    logger.debug("[{}] Submitted stream request to queue for bucket {}, path {} for {}", threadName, bucket, path, request.range());
+    return future.start(permit(), executor, () -> {
+      final Stopwatch watch = Stopwatch.createStarted();
+      try {
+        final ResponseInputStream<GetObjectResponse> response = invoker.invoke(() -> {
+          future.checkNotCancelled();
+          return s3.getObject(request);
+        });
+        future.attach(response);
+        logger.info("[{}] Opened stream for bucket {}, path {} for {}, took {} ms", threadName, bucket, path, request.range(),
+          watch.elapsed(TimeUnit.MILLISECONDS));
+        return new RangeStream(response, offset, len);
+      } catch (Exception e) {
+        throw new RuntimeException(readFailure(e, request, watch));
+      }
+    });
+  }
+
+  /**
+   * @return the process-wide pool running the reads of readers created without an executor, bounded and served
+   * in priority order when s3.read.threads is set
+   */
+  public static ExecutorService defaultExecutor(S3Configs s3Configs) {
+    if (s3Configs.getReadThreads() <= 0) {
+      return threadPool;
+    }
+    if (priorityThreadPool == null) {
+      synchronized (S3AsyncByteReaderUsingSyncClient.class) {
+        if (priorityThreadPool == null) {
+          priorityThreadPool = new PriorityReadExecutor(s3Configs.getReadThreads(), s3Configs.getReadAgingMillis(), "s3-read-");
+        }
+      }
+    }
+    return priorityThreadPool;
+  }
+
+  private CompletableFuture<Void> permit() {
+    return shaper == null ? CompletableFuture.completedFuture(null) : shaper.acquire(shapingKey);
+  }
+
+  /**
+   * Collects the response body of a small read like {@link ResponseTransformer#toBytes()}, but registers the response with the
+   * read so that cancelling the read aborts the HTTP request, and times the body transfer.
+   */
+  private ResponseTransformer<GetObjectResponse, ResponseBytes<GetObjectResponse>> abortableBytes(CancellableRead<?> read) {
+    return (response, inputStream) -> {
+      read.attach(inputStream);
+      final long start = System.nanoTime();
+      try {
+        final ResponseBytes<GetObjectResponse> bytes = ResponseBytes.fromByteArrayUnsafe(response, IoUtils.toByteArray(inputStream));
+        if (phaseTimer != null) {
+          phaseTimer.recordTransfer(System.nanoTime() - start);
+        }
+        return bytes;
+      } catch (IOException e) {
+        read.checkNotCancelled();
+        throw RetryableException.builder().message("Failed to read response.").cause(e).build();
+      }
+    };
+  }
+
   @Override
   public void close() throws Exception {
     AsyncByteReader.super.close();
   }
 
+  /**
+   * Compares the CRC32C of the ranges read so far with the full object checksum stored by S3, when checksum
+   * verification is enabled.
+   * @return true if the object was verified, false if verification is disabled or not possible for this object
+   * @throws IOException if the checksums do not match, or the object was overwritten since its ranges were read
+   */
+  public boolean verifyObjectChecksum(long objectLength) throws IOException {
+    if (verifier == null) {
+      return false;
+    }
+    verifier.logOverhead();
+    final HeadObjectRequest.Builder request = HeadObjectRequest.builder()
+      .bucket(bucket)
+      .key(path)
+      .overrideConfiguration(c -> c.putHeader(CHECKSUM_MODE_HEADER, "ENABLED"));
+    final String eTag = pinnedETag;
+    if (eTag != null) {
+      // the checksum must be of the version the ranges were read from
+      request.ifMatch(eTag);
+    }
+    final HeadObjectResponse head;
+    try {
+      head = s3.headObject(request.build());
+    } catch (S3Exception e) {
+      if (e.statusCode() == 412) {
+        throw new IOException("Object " + path + " changed while it was read, ETag is no longer " + eTag, e);
+      }
+      throw e;
+    }
+    return verifier.verify(path, objectLength, head.sdkHttpResponse().firstMatchingHeader(CHECKSUM_CRC32C_HEADER).orElse(null));
+  }
+
+  public ObjectChecksumVerifier getChecksumVerifier() {
+    return verifier;
+  }
+
   /**
    * Scaffolding class to allow easy retries of an operation.
    */
   static class RetryableInvoker {
+    private static final int MAX_THROTTLE_RETRIES = 5;
+    private static final long BASE_THROTTLE_BACKOFF_MILLIS = 50;
     private final int maxRetries;
+    private final RequestRateShaper shaper;
+    private final String shapingKey;
     RetryableInvoker(int maxRetries) {
+      this(maxRetries, null, null);
+    }
+
+    RetryableInvoker(int maxRetries, RequestRateShaper shaper, String shapingKey) {
       this.maxRetries = maxRetries;
+      this.shaper = shaper;
+      this.shapingKey = shapingKey;
     }
 
     <T> T invoke(Callable<T> operation) throws Exception {
       int retryCount = 0;
+      int throttleCount = 0;
       while (true) {
         try {
           return operation.call();
@@ -114,6 +301,19 @@ public final class S3AsyncByteReaderUsingSyncClient implements AsyncByteReader {
 
           logger.warn("Retrying S3Async operation, exception was: {}", e.getLocalizedMessage());
           ++retryCount;
+        } catch (S3Exception e) {
+          if (e.statusCode() != SLOW_DOWN_STATUS_CODE || throttleCount >= MAX_THROTTLE_RETRIES) {
+            throw e;
+          }
+          ++throttleCount;
+          // slow down the whole prefix, then back off with full jitter so throttled requests do not retry in lockstep
+          if (shaper != null) {
+            shaper.onThrottle(shapingKey);
+            shaper.acquire(shapingKey).get();
+          }
+          long backoffMillis = ThreadLocalRandom.current().nextLong(BASE_THROTTLE_BACKOFF_MILLIS << throttleCount);
+          logger.warn("Throttled S3Async operation, retrying in {} ms", backoffMillis);
+          Thread.sleep(backoffMillis);
         }
       }
     }
@@ -125,18 +325,21 @@ public final class S3AsyncByteReaderUsingSyncClient implements AsyncByteReader {
     private final long offset;
     private final int len;
     private final RetryableInvoker invoker;
+    private final CancellableRead<Void> future;
+    private final long submittedNanos = System.nanoTime();
 
-    S3SyncReadObject(long offset, int len, ByteBuf byteBuf, int dstOffset) {
+    S3SyncReadObject(long offset, int len, ByteBuf byteBuf, int dstOffset, CancellableRead<Void> future) {
       this.offset = offset;
       this.len = len;
       this.byteBuf = byteBuf;
       this.dstOffset = dstOffset;
+      this.future = future;
 
       // Imitate the S3AFileSystem retry logic. See
       // https://github.com/apache/hadoop/blob/trunk/hadoop-tools/hadoop-aws/src/main/java/org/apache/hadoop/fs/s3a/Invoker.java
       // which is created with
       // https://github.com/apache/hadoop/blob/trunk/hadoop-common-project/hadoop-common/src/main/java/org/apache/hadoop/io/retry/RetryPolicies.java#L63
-      this.invoker = new RetryableInvoker(1);
+      this.invoker = new RetryableInvoker(1, shaper, shapingKey);
     }
 
     @Override
@@ -144,65 +347,300 @@ public final class S3AsyncByteReaderUsingSyncClient implements AsyncByteReader {
       // S3 Async reader depends on S3 libraries available from application class loader context
       // Thread that runs this runnable might be created from Hive readers from a different
       // class loader context. So, always changing the context to application class loader.
+      if (phaseTimer != null) {
+        phaseTimer.recordQueueWait(System.nanoTime() - submittedNanos);
+      }
+      final GetObjectRequest request = newRequest(range(offset, len));
+      final Stopwatch watch = Stopwatch.createStarted();
+
       try {
-        final GetObjectRequest.Builder requestBuilder = GetObjectRequest.builder()
-          .bucket(bucket)
-          .key(path)
-          .range(range(offset, len));
-        if (instant != null && shouldCheckTimestamp) {
-          requestBuilder.ifUnmodifiedSince(instant);
+        invoker.invoke(() -> {
+          future.checkNotCancelled();
+          return onEndpoint(client -> client.getObject(request, intoBuffer()));
+        });
+        logger.info("[{}] Completed request for bucket {}, path {} for {}, took {} ms", threadName, bucket, path, request.range(),
+          watch.elapsed(TimeUnit.MILLISECONDS));
+      } catch (Exception e) {
+        if (future.isCancelled()) {
+          logger.debug("[{}] Cancelled request for bucket {}, path {} for {}, after {} ms", threadName, bucket, path, request.range(),
+            watch.elapsed(TimeUnit.MILLISECONDS));
+          throw new CancellationException();
         }
-        if (requesterPays) {
-          requestBuilder.requestPayer(REQUESTER_PAYS);
+        throw new RuntimeException(readFailure(e, request, watch));
+      }
+    }
+
+    /**
+     * Sends the request through the endpoint pool when there is one, reporting back how the endpoint did.
+     * A request that fails because of its endpoint is sent again to another one, once to each at most.
+     */
+    private <T> T onEndpoint(Function<S3Client, T> call) {
+      if (endpoints == null) {
+        return call.apply(s3);
+      }
+      final Set<EndpointPool.Endpoint> tried = new HashSet<>();
+      SdkClientException lastFailure = null;
+      while (true) {
+        final EndpointPool.Endpoint endpoint = endpoints.acquire(tried);
+        if (endpoint == null) {
+          throw lastFailure;
         }
-        if (ssecEnabled) {
-          requestBuilder.sseCustomerAlgorithm("AES256");
-          requestBuilder.sseCustomerKey(ssecKey);
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+          final T result = call.apply(endpoint.client());
+          failed = false;
+          return result;
+        } catch (S3Exception e) {
+          // an error response means the endpoint is reachable, only server errors count against it
+          failed = e.statusCode() >= 500;
+          throw e;
+        } catch (SdkClientException e) {
+          if (future.isCancelled()) {
+            throw e;
+          }
+          tried.add(endpoint);
+          lastFailure = e;
+          logger.debug("[{}] Request to endpoint {} failed, trying another one", threadName, endpoint, e);
+        } finally {
+          endpoints.release(endpoint, System.nanoTime() - start, failed && !future.isCancelled());
         }
+      }
+    }
 
-        final GetObjectRequest request = requestBuilder.build();
-        final Stopwatch watch = Stopwatch.createStarted();
-
+    /**
+     * Streams the response body from the connection straight into the destination buffer, so the range is
+     * never collected into a heap array of its own. Every attempt, including SDK retries, rewrites the range
+     * from the start, and cancelling the read aborts the HTTP request.
+     */
+    private ResponseTransformer<GetObjectResponse, Integer> intoBuffer() {
+      return (response, inputStream) -> {
+        future.attach(inputStream);
+        final long start = System.nanoTime();
         try {
-          final ResponseBytes<GetObjectResponse> responseBytes = invoker.invoke(() -> s3.getObjectAsBytes(request));
-          byteBuf.setBytes(dstOffset, responseBytes.asInputStream(), len);
-          logger.info("[{}] Completed request for bucket {}, path {} for {}, took {} ms", threadName, bucket, path, request.range(),
-            watch.elapsed(TimeUnit.MILLISECONDS));
-        } catch (NoSuchKeyException ne) {
-          logger.debug("[{}] Request for bucket {}, path {} failed as requested file is not present, took {} ms", threadName,
-            bucket, path, watch.elapsed(TimeUnit.MILLISECONDS));
-          throw new CompletionException(
-            new FileNotFoundException("File not found " + path));
-        } catch (S3Exception s3e) {
-              switch (s3e.statusCode()) {
-                case Constants.FAILED_PRECONDITION_STATUS_CODE:
-                  logger.info("[{}] Request for bucket {}, path {} failed as requested version of file not present, took {} ms", threadName,
-                    bucket, path, watch.elapsed(TimeUnit.MILLISECONDS));
-                  throw new CompletionException(
-                    new FileNotFoundException("Version of file changed " + path));
-                case Constants.BUCKET_ACCESS_FORBIDDEN_STATUS_CODE:
-                  logger.info("[{}] Request for bucket {}, path {} failed as access was denied, took {} ms", threadName,
-                    bucket, path, watch.elapsed(TimeUnit.MILLISECONDS));
-                  throw new RuntimeException(s3e.getMessage());
-                default:
-                  logger.error("[{}] Request for bucket {}, path {} failed with code {}. Failing read, took {} ms", threadName, bucket, path,
-                    s3e.statusCode(), watch.elapsed(TimeUnit.MILLISECONDS));
-                  throw new CompletionException(s3e);
-              }
-        } catch (Exception e) {
-          logger.error("[{}] Failed request for bucket {}, path {} for {}, took {} ms", threadName, bucket, path, request.range(),
-            watch.elapsed(TimeUnit.MILLISECONDS), e);
-          throw new CompletionException(e);
+          final int total = copy(inputStream);
+          if (total < len) {
+            throw new EOFException("Response ended after " + total + " of " + len + " bytes");
+          }
+          if (phaseTimer != null) {
+            phaseTimer.recordTransfer(System.nanoTime() - start);
+          }
+          return total;
+        } catch (IOException e) {
+          future.checkNotCancelled();
+          throw RetryableException.builder().message("Failed to read response.").cause(e).build();
+        }
+      };
+    }
+
+    /**
+     * Copies the body into the destination buffer through a small per-thread chunk. When verification is
+     * enabled the CRC32C of each chunk is updated while it is still in cache, so verification does not need
+     * a second pass over the data.
+     */
+    private int copy(InputStream in) throws IOException {
+      final byte[] chunk = copyChunk.get();
+      final Checksum crc = verifier == null ? null : Crc32c.newChecksum();
+      long checksumNanos = 0;
+      int total = 0;
+      int n;
+      while (total < len && (n = in.read(chunk, 0, Math.min(chunk.length, len - total))) > 0) {
+        if (crc != null) {
+          final long start = System.nanoTime();
+          crc.update(chunk, 0, n);
+          checksumNanos += System.nanoTime() - start;
+        }
+        byteBuf.setBytes(dstOffset + total, chunk, 0, n);
+        total += n;
+      }
+      if (crc != null && total == len) {
+        verifier.recordOverhead(checksumNanos, total);
+        verifier.recordRange(offset, total, crc.getValue());
+      }
+      return total;
+    }
+  }
+
+  /**
+   * Reads the tail of the object with a suffix range, learning the object length and ETag
+   * from the same response instead of issuing a separate HEAD request.
+   */
+  class S3SyncReadTail implements Supplier<ObjectTail> {
+    private final int len;
+    private final RetryableInvoker invoker;
+    private final CancellableRead<ObjectTail> future;
+
+    S3SyncReadTail(int len, CancellableRead<ObjectTail> future) {
+      this.len = len;
+      this.future = future;
+      this.invoker = new RetryableInvoker(1, shaper, shapingKey);
+    }
+
+    @Override
+    public ObjectTail get() {
+      final GetObjectRequest request = newRequest(suffixRange(len));
+      final Stopwatch watch = Stopwatch.createStarted();
+
+      try {
+        final ResponseBytes<GetObjectResponse> responseBytes = invoker.invoke(() -> {
+          future.checkNotCancelled();
+          return s3.getObject(request, abortableBytes(future));
+        });
+        final GetObjectResponse response = responseBytes.response();
+        final long objectLength = objectLength(response);
+        logger.info("[{}] Completed tail request for bucket {}, path {} for {}, object length {}, took {} ms", threadName, bucket, path,
+          request.range(), objectLength, watch.elapsed(TimeUnit.MILLISECONDS));
+        pinnedETag = response.eTag();
+        return new ObjectTail(responseBytes.asByteArray(), objectLength, response.eTag());
+      } catch (Exception e) {
+        throw new RuntimeException(readFailure(e, request, watch));
+      }
+    }
+  }
+
+  /**
+   * Body of a streaming GET. Closing it before the end aborts the request, which closes the connection
+   * instead of draining the rest of the body. When verification is enabled the bytes read are checksummed
+   * and recorded as one range on close.
+   */
+  private final class RangeStream extends InputStream {
+    private final ResponseInputStream<GetObjectResponse> response;
+    private final long offset;
+    private final long len;
+    private final Checksum crc;
+    private long bytesRead;
+    private long checksumNanos;
+    private boolean closed;
+
+    RangeStream(ResponseInputStream<GetObjectResponse> response, long offset, long len) {
+      this.response = response;
+      this.offset = offset;
+      this.len = len;
+      this.crc = verifier == null ? null : Crc32c.newChecksum();
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int n) throws IOException {
+      if (bytesRead >= len) {
+        return -1;
+      }
+      final int r = response.read(b, off, (int) Math.min(n, len - bytesRead));
+      if (r > 0) {
+        if (crc != null) {
+          final long start = System.nanoTime();
+          crc.update(b, off, r);
+          checksumNanos += System.nanoTime() - start;
         }
-      } catch (CompletionException e) {
-        throw new RuntimeException(e);
+        bytesRead += r;
+      }
+      return r;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (bytesRead < len) {
+        response.abort();
+      } else {
+        response.close();
+      }
+      if (crc != null && bytesRead > 0) {
+        verifier.recordOverhead(checksumNanos, bytesRead);
+        verifier.recordRange(offset, bytesRead, crc.getValue());
       }
     }
   }
 
+  private GetObjectRequest newRequest(String range) {
+    final GetObjectRequest.Builder requestBuilder = GetObjectRequest.builder()
+      .bucket(bucket)
+      .key(path)
+      .range(range);
+    if (instant != null && shouldCheckTimestamp) {
+      requestBuilder.ifUnmodifiedSince(instant);
+    }
+    if (requesterPays) {
+      requestBuilder.requestPayer(REQUESTER_PAYS);
+    }
+    if (ssecEnabled) {
+      requestBuilder.sseCustomerAlgorithm("AES256");
+      requestBuilder.sseCustomerKey(ssecKey);
+    }
+    if (verifier != null && pinnedETag != null) {
+      // every range verified must come from the same version of the object
+      requestBuilder.ifMatch(pinnedETag);
+    }
+    return requestBuilder.build();
+  }
+
+  private CompletionException readFailure(Exception e, GetObjectRequest request, Stopwatch watch) {
+    if (e instanceof NoSuchKeyException) {
+      logger.debug("[{}] Request for bucket {}, path {} failed as requested file is not present, took {} ms", threadName,
+        bucket, path, watch.elapsed(TimeUnit.MILLISECONDS));
+      return new CompletionException(
+        new FileNotFoundException("File not found " + path));
+    }
+    if (e instanceof S3Exception) {
+      S3Exception s3e = (S3Exception) e;
+      switch (s3e.statusCode()) {
+        case Constants.FAILED_PRECONDITION_STATUS_CODE:
+          logger.info("[{}] Request for bucket {}, path {} failed as requested version of file not present, took {} ms", threadName,
+            bucket, path, watch.elapsed(TimeUnit.MILLISECONDS));
+          return new CompletionException(
+            new FileNotFoundException("Version of file changed " + path));
+        case Constants.BUCKET_ACCESS_FORBIDDEN_STATUS_CODE:
+          logger.info("[{}] Request for bucket {}, path {} failed as access was denied, took {} ms", threadName,
+            bucket, path, watch.elapsed(TimeUnit.MILLISECONDS));
+          throw new RuntimeException(s3e.getMessage());
+        case RANGE_NOT_SATISFIABLE_STATUS_CODE:
+          // expected for speculative reads issued before the object length is known
+          logger.debug("[{}] Request for bucket {}, path {} for {} starts past the end of the object, took {} ms", threadName,
+            bucket, path, request.range(), watch.elapsed(TimeUnit.MILLISECONDS));
+          return new CompletionException(
+            new EOFException("Range " + request.range() + " starts past the end of " + path));
+        default:
+          logger.error("[{}] Request for bucket {}, path {} failed with code {}. Failing read, took {} ms", threadName, bucket, path,
+            s3e.statusCode(), watch.elapsed(TimeUnit.MILLISECONDS));
+          return new CompletionException(s3e);
+      }
+    }
+    logger.error("[{}] Failed request for bucket {}, path {} for {}, took {} ms", threadName, bucket, path, request.range(),
+      watch.elapsed(TimeUnit.MILLISECONDS), e);
+    return new CompletionException(e);
+  }
+
+  /**
+   * The object length is the part after the slash of a "bytes start-end/length" Content-Range. A response
+   * without one holds the whole object.
+   */
+  private static long objectLength(GetObjectResponse response) throws IOException {
+    final String contentRange = response.contentRange();
+    if (contentRange == null) {
+      return response.contentLength();
+    }
+    final int slash = contentRange.lastIndexOf('/');
+    if (slash < 0 || contentRange.endsWith("*")) {
+      throw new IOException("Unable to determine object length from Content-Range " + contentRange);
+    }
+    return Long.parseLong(contentRange.substring(slash + 1).trim());
+  }
+
   private String range(long start, long len) {
     // https://www.w3.org/Protocols/rfc2616/rfc2616-sec14.html#sec14.35
     // According to spec, the bytes should be inclusive bounded, thus inclusion of -1 to end boundar.
     return String.format("bytes=%d-%d",start, start + len - 1);
   }
+
+  private String suffixRange(long len) {
+    return String.format("bytes=-%d", len);
+  }
 }
@@ -1,5 +1,9 @@
 package com.dremio.s3;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class S3Configs {
 
     private final String accessKey;
@@ -10,6 +14,27 @@ public class S3Configs {
     private String region;
     private String endpoint;
 
+    // Optional tuning knobs, passed as system properties so the positional arguments stay unchanged.
+    private final long speculativePrefetchBytes;
+    private final double requestsPerPrefix;
+    private final int requestBurst;
+    private final boolean checksumVerificationEnabled;
+    private final boolean hybridRead;
+    private final boolean phaseTimingEnabled;
+    private final long hybridSampleMillis;
+    private final double hybridDropRatio;
+    private final long hybridMaxTailMillis;
+    private final boolean endpointPerAddress;
+    private final int maxEndpointAddresses;
+    private final long endpointRefreshSeconds;
+    private final long endpointEjectSeconds;
+    private final double endpointEjectLatencyFactor;
+    private final int readThreads;
+    private final long readAgingMillis;
+    private final boolean streamRead;
+    private final int streamChunkBytes;
+    private final long streamMaxMemoryBytes;
+
     public S3Configs(String[] args) {
         if (args.length < 4) {
             throw new IllegalStateException("Please provide buckets and one object path to validate S3 Performance!");
@@ -30,6 +55,67 @@ public class S3Configs {
         if (args.length >= 8) {
             endpoint = args[7];
         }
+        speculativePrefetchBytes = Long.getLong("s3.prefetch.bytes", 0);
+        requestsPerPrefix = Double.parseDouble(System.getProperty("s3.rate.perPrefix", "0"));
+        requestBurst = Integer.getInteger("s3.rate.burst", 1000);
+        checksumVerificationEnabled = Boolean.getBoolean("s3.verifyChecksum");
+        phaseTimingEnabled = Boolean.getBoolean("s3.timing.phases");
+        hybridRead = "hybrid".equalsIgnoreCase(System.getProperty("s3.read.mode", "ranges"));
+        streamRead = "stream".equalsIgnoreCase(System.getProperty("s3.read.mode", "ranges"));
+        hybridSampleMillis = Long.getLong("s3.hybrid.sampleMillis", 100);
+        hybridDropRatio = Double.parseDouble(System.getProperty("s3.hybrid.dropRatio", "0.5"));
+        hybridMaxTailMillis = Long.getLong("s3.hybrid.maxTailMillis", 1000);
+        endpointPerAddress = Boolean.getBoolean("s3.endpoints.perAddress");
+        maxEndpointAddresses = Integer.getInteger("s3.endpoints.maxAddresses", 8);
+        endpointRefreshSeconds = Long.getLong("s3.endpoints.refreshSeconds", 60);
+        endpointEjectSeconds = Long.getLong("s3.endpoints.ejectSeconds", 30);
+        endpointEjectLatencyFactor = Double.parseDouble(System.getProperty("s3.endpoints.ejectLatencyFactor", "3"));
+        readThreads = Integer.getInteger("s3.read.threads", 0);
+        readAgingMillis = Long.getLong("s3.read.agingMillis", 100);
+        streamChunkBytes = Integer.getInteger("s3.stream.chunkBytes", 8 * 1024 * 1024);
+        streamMaxMemoryBytes = Long.getLong("s3.stream.maxMemoryBytes", 256L * 1024 * 1024);
+    }
+
+    private S3Configs(S3Configs other, String path, String endpoint) {
+        this.accessKey = other.accessKey;
+        this.secretKey = other.secretKey;
+        this.bucket = other.bucket;
+        this.path = path;
+        this.region = other.region;
+        this.endpoint = endpoint;
+        this.speculativePrefetchBytes = other.speculativePrefetchBytes;
+        this.requestsPerPrefix = other.requestsPerPrefix;
+        this.requestBurst = other.requestBurst;
+        this.checksumVerificationEnabled = other.checksumVerificationEnabled;
+        this.phaseTimingEnabled = other.phaseTimingEnabled;
+        this.hybridRead = other.hybridRead;
+        this.hybridSampleMillis = other.hybridSampleMillis;
+        this.hybridDropRatio = other.hybridDropRatio;
+        this.hybridMaxTailMillis = other.hybridMaxTailMillis;
+        this.endpointPerAddress = other.endpointPerAddress;
+        this.maxEndpointAddresses = other.maxEndpointAddresses;
+        this.endpointRefreshSeconds = other.endpointRefreshSeconds;
+        this.endpointEjectSeconds = other.endpointEjectSeconds;
+        this.endpointEjectLatencyFactor = other.endpointEjectLatencyFactor;
+        this.readThreads = other.readThreads;
+        this.readAgingMillis = other.readAgingMillis;
+        this.streamRead = other.streamRead;
+        this.streamChunkBytes = other.streamChunkBytes;
+        this.streamMaxMemoryBytes = other.streamMaxMemoryBytes;
+    }
+
+    /**
+     * @return the same settings for another object in the same bucket
+     */
+    public S3Configs withPath(String otherPath) {
+        return new S3Configs(this, otherPath, endpoint);
+    }
+
+    /**
+     * @return the same settings with a single other endpoint
+     */
+    public S3Configs withEndpoint(String otherEndpoint) {
+        return new S3Configs(this, path, otherEndpoint);
     }
 
     public String getAccessKey() {
@@ -53,7 +139,128 @@ public class S3Configs {
     }
 
 
+    /**
+     * @return the first endpoint when several are configured
+     */
     public String getEndpoint() {
-        return endpoint;
+        List<String> endpoints = getEndpoints();
+        return endpoints.isEmpty() ? null : endpoints.get(0);
+    }
+
+    /**
+     * The endpoint argument may list several comma separated endpoints that serve the same buckets, which
+     * range reads are spread across.
+     */
+    public List<String> getEndpoints() {
+        if (endpoint == null || endpoint.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> endpoints = new ArrayList<>();
+        for (String e : endpoint.split(",")) {
+            if (!e.trim().isEmpty()) {
+                endpoints.add(e.trim());
+            }
+        }
+        return endpoints;
+    }
+
+    /**
+     * True to resolve the endpoint host to all its addresses and give each address its own connection pool.
+     */
+    public boolean isEndpointPerAddress() {
+        return endpointPerAddress;
+    }
+
+    public int getMaxEndpointAddresses() {
+        return maxEndpointAddresses;
+    }
+
+    public long getEndpointRefreshSeconds() {
+        return endpointRefreshSeconds;
+    }
+
+    public long getEndpointEjectSeconds() {
+        return endpointEjectSeconds;
+    }
+
+    public double getEndpointEjectLatencyFactor() {
+        return endpointEjectLatencyFactor;
+    }
+
+    /**
+     * @return threads running the blocking reads in priority order, 0 for an unbounded pool
+     */
+    public int getReadThreads() {
+        return readThreads;
+    }
+
+    public long getReadAgingMillis() {
+        return readAgingMillis;
+    }
+
+    /**
+     * A bucket named "file" means the path is a local file, which is read instead of an S3 object.
+     */
+    public boolean isLocal() {
+        return "file".equalsIgnoreCase(bucket);
+    }
+
+    public long getSpeculativePrefetchBytes() {
+        return speculativePrefetchBytes;
+    }
+
+    public double getRequestsPerPrefix() {
+        return requestsPerPrefix;
+    }
+
+    public int getRequestBurst() {
+        return requestBurst;
+    }
+
+    public boolean isChecksumVerificationEnabled() {
+        return checksumVerificationEnabled;
+    }
+
+    public boolean isPhaseTimingEnabled() {
+        return phaseTimingEnabled;
+    }
+
+    /**
+     * True to read objects with one streaming GET that is split into range reads when it slows down,
+     * instead of range reads only.
+     */
+    public boolean isHybridRead() {
+        return hybridRead;
+    }
+
+    public long getHybridSampleMillis() {
+        return hybridSampleMillis;
+    }
+
+    public double getHybridDropRatio() {
+        return hybridDropRatio;
+    }
+
+    public long getHybridMaxTailMillis() {
+        return hybridMaxTailMillis;
+    }
+
+    /**
+     * True to read the column chunks listed in the footer as streams of bounded ranges within a memory ceiling,
+     * instead of the whole object in range reads.
+     */
+    public boolean isStreamRead() {
+        return streamRead;
+    }
+
+    public int getStreamChunkBytes() {
+        return streamChunkBytes;
+    }
+
+    /**
+     * @return the most bytes of range buffers held at once by a streaming read
+     */
+    public long getStreamMaxMemoryBytes() {
+        return streamMaxMemoryBytes;
     }
 }
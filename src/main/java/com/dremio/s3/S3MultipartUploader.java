@@ -0,0 +1,169 @@
+package com.dremio.s3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.metrics.Histogram;
+import com.dremio.writer.UploadSource;
+import com.google.common.base.Stopwatch;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+/**
+ * Uploads an object with parallel UploadPart requests of the sync client.
+ * <p>
+ * Each part is filled into its own direct buffer from the allocator and sent from there without copying
+ * it onto the heap. The number of parts held in memory is bounded by the in-flight byte budget, so the
+ * source is only read as fast as the parts are uploaded. The upload is aborted if any part fails, so no
+ * orphaned parts are left behind to be billed.
+ */
+public final class S3MultipartUploader {
+  private static final Logger logger = LoggerFactory.getLogger(S3MultipartUploader.class);
+
+  public static final long MIN_PART_SIZE = 5L << 20;
+  // S3 allows 5 GB parts, buffers are limited to what fits a ByteBuf
+  public static final long MAX_PART_SIZE = 1L << 30;
+  private static final int MAX_PARTS = 10_000;
+  private static final long PART_SIZE_ALIGNMENT = 1L << 20;
+
+  private final S3Client s3;
+  private final String bucket;
+  private final String key;
+  private final ExecutorService executor;
+  private final ByteBufAllocator allocator;
+  private final int concurrency;
+  private final long maxInFlightBytes;
+
+  /**
+   * @param concurrency maximum number of parts uploaded at once
+   * @param maxInFlightBytes maximum bytes of parts buffered at once, at least one part is always allowed
+   */
+  public S3MultipartUploader(S3Client s3, S3Configs s3Configs, ExecutorService executor, ByteBufAllocator allocator,
+                             int concurrency, long maxInFlightBytes) {
+    this.s3 = s3;
+    this.bucket = s3Configs.getBucket();
+    this.key = s3Configs.getPath();
+    this.executor = executor;
+    this.allocator = allocator;
+    this.concurrency = Math.max(concurrency, 1);
+    this.maxInFlightBytes = maxInFlightBytes;
+  }
+
+  /**
+   * Picks the part size for an object: the preferred size, shrunk so that small objects still spread over
+   * all upload slots, and grown so that large objects stay within the 10,000 part limit.
+   */
+  public long partSize(long objectSize, long preferredPartSize) {
+    long size = Math.min(preferredPartSize, divideRoundingUp(objectSize, concurrency));
+    size = Math.max(size, divideRoundingUp(objectSize, MAX_PARTS));
+    size = divideRoundingUp(size, PART_SIZE_ALIGNMENT) * PART_SIZE_ALIGNMENT;
+    return Math.min(Math.max(size, MIN_PART_SIZE), MAX_PART_SIZE);
+  }
+
+  /**
+   * Uploads the whole source with parts of the given size.
+   * @param partLatencies receives the latency of every UploadPart request in nanoseconds
+   * @return the ETag of the completed object
+   */
+  public String upload(UploadSource source, long partSize, Histogram partLatencies) throws Exception {
+    final long objectSize = source.size();
+    final int nParts = (int) Math.max(1, divideRoundingUp(objectSize, partSize));
+    if (nParts > MAX_PARTS) {
+      throw new IllegalArgumentException("Part size " + partSize + " needs " + nParts + " parts, S3 allows " + MAX_PARTS);
+    }
+    final int window = (int) Math.max(1, Math.min(concurrency, maxInFlightBytes / partSize));
+    final Stopwatch watch = Stopwatch.createStarted();
+    final String uploadId = s3.createMultipartUpload(b -> b.bucket(bucket).key(key)).uploadId();
+    logger.info("Started upload {} of {} bytes to bucket {}, path {} in {} parts of {} bytes, {} at a time", uploadId,
+      objectSize, bucket, key, nParts, partSize, window);
+
+    final CompletedPart[] parts = new CompletedPart[nParts];
+    final List<CompletableFuture<Void>> futures = new ArrayList<>(nParts);
+    final Semaphore slots = new Semaphore(window);
+    final AtomicBoolean failed = new AtomicBoolean();
+    try {
+      for (int i = 0; i < nParts && !failed.get(); i++) {
+        slots.acquire();
+        final int partNumber = i + 1;
+        final long offset = i * partSize;
+        final int len = (int) Math.min(partSize, objectSize - offset);
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+          parts[partNumber - 1] = uploadPart(uploadId, partNumber, source, offset, len, partLatencies);
+        }, executor);
+        future.whenComplete((v, e) -> {
+          if (e != null) {
+            failed.set(true);
+          }
+          slots.release();
+        });
+        futures.add(future);
+      }
+      // once a part fails no new parts are issued, and the ones in flight are waited for so that none of
+      // them lands after the abort
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+    } catch (Exception e) {
+      abort(uploadId);
+      throw e;
+    }
+
+    final String eTag = s3.completeMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId)
+      .multipartUpload(m -> m.parts(Arrays.asList(parts)))).eTag();
+    logger.info("Completed upload {} to bucket {}, path {}, took {} ms", uploadId, bucket, key,
+      watch.elapsed(TimeUnit.MILLISECONDS));
+    return eTag;
+  }
+
+  private CompletedPart uploadPart(String uploadId, int partNumber, UploadSource source, long offset, int len,
+                                   Histogram partLatencies) {
+    final ByteBuf buf = allocator.directBuffer(len, len);
+    try {
+      source.read(offset, len, buf);
+      // every attempt, including SDK retries, streams from its own view of the buffer
+      final RequestBody body = RequestBody.fromContentProvider(
+        () -> new ByteBufInputStream(buf.duplicate()), len, "application/octet-stream");
+      final long start = System.nanoTime();
+      final UploadPartResponse response = s3.uploadPart(b -> b.bucket(bucket).key(key).uploadId(uploadId)
+        .partNumber(partNumber).contentLength((long) len), body);
+      final long elapsed = System.nanoTime() - start;
+      partLatencies.record(elapsed);
+      logger.debug("Uploaded part {} of upload {}, {} bytes took {} ms", partNumber, uploadId, len,
+        TimeUnit.NANOSECONDS.toMillis(elapsed));
+      return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+    } catch (Exception e) {
+      logger.error("Error uploading part {} of upload {} for bucket {}, path {}", partNumber, uploadId, bucket, key, e);
+      throw new CompletionException(e);
+    } finally {
+      buf.release();
+    }
+  }
+
+  private void abort(String uploadId) {
+    try {
+      s3.abortMultipartUpload(b -> b.bucket(bucket).key(key).uploadId(uploadId));
+      logger.info("Aborted upload {} to bucket {}, path {}", uploadId, bucket, key);
+    } catch (Exception e) {
+      logger.error("Error aborting upload {} to bucket {}, path {}, its parts remain until a lifecycle rule removes them",
+        uploadId, bucket, key, e);
+    }
+  }
+
+  private static long divideRoundingUp(long value, long divisor) {
+    return (value + divisor - 1) / divisor;
+  }
+}
@@ -0,0 +1,163 @@
+package com.dremio.s3;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Signs S3 GET requests with AWS Signature Version 4, for clients that do not go through the SDK.
+ * <p>
+ * Only the host, x-amz-content-sha256 and x-amz-date headers are signed and the payload is left unsigned, as
+ * S3 allows for requests without a body. The signing key derived from the secret key is valid for a day and is
+ * cached for that day, so signing a request costs one SHA-256 digest and one HMAC.
+ */
+public final class SigV4Signer {
+  static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+  private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+  private static final String HMAC_SHA256 = "HmacSHA256";
+  private static final String SERVICE = "s3";
+  private static final String SIGNED_HEADERS = "host;x-amz-content-sha256;x-amz-date";
+  private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private static final ThreadLocal<Mac> hmac = ThreadLocal.withInitial(() -> {
+    try {
+      return Mac.getInstance(HMAC_SHA256);
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+  private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+
+  private final String accessKey;
+  private final String secretKey;
+  private final String region;
+  private volatile SigningKey signingKey;
+  private volatile AmzDate amzDate;
+
+  public SigV4Signer(String accessKey, String secretKey, String region) {
+    this.accessKey = accessKey;
+    this.secretKey = secretKey;
+    this.region = region;
+  }
+
+  /**
+   * @return the x-amz-date header value of the given time, formatted once per second
+   */
+  public String amzDate(long epochMillis) {
+    final long second = epochMillis / 1000;
+    AmzDate cached = amzDate;
+    if (cached == null || cached.second != second) {
+      cached = new AmzDate(second, AMZ_DATE.format(Instant.ofEpochSecond(second)));
+      amzDate = cached;
+    }
+    return cached.value;
+  }
+
+  /**
+   * @param host Host header value, with the port when it is not the default one
+   * @param canonicalUri URI encoded path of the request
+   * @param amzDate x-amz-date header value the request is sent with
+   * @return the Authorization header value of a GET without query parameters
+   */
+  public String authorization(String host, String canonicalUri, String amzDate) {
+    final String date = amzDate.substring(0, 8);
+    final String scope = date + "/" + region + "/" + SERVICE + "/aws4_request";
+    final String canonicalRequest = "GET\n"
+      + canonicalUri + "\n"
+      + "\n"
+      + "host:" + host + "\n"
+      + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+      + "x-amz-date:" + amzDate + "\n"
+      + "\n"
+      + SIGNED_HEADERS + "\n"
+      + UNSIGNED_PAYLOAD;
+    final String stringToSign = ALGORITHM + "\n"
+      + amzDate + "\n"
+      + scope + "\n"
+      + hex(sha256.get().digest(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+    final String signature = hex(hmac(key(date), stringToSign));
+    return ALGORITHM + " Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + SIGNED_HEADERS + ", Signature=" + signature;
+  }
+
+  private byte[] key(String date) {
+    SigningKey cached = signingKey;
+    if (cached == null || !cached.date.equals(date)) {
+      final byte[] dateKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+      final byte[] regionKey = hmac(dateKey, region);
+      final byte[] serviceKey = hmac(regionKey, SERVICE);
+      cached = new SigningKey(date, hmac(serviceKey, "aws4_request"));
+      signingKey = cached;
+    }
+    return cached.key;
+  }
+
+  private static byte[] hmac(byte[] key, String data) {
+    final Mac mac = hmac.get();
+    try {
+      mac.init(new SecretKeySpec(key, HMAC_SHA256));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+    return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String hex(byte[] bytes) {
+    final char[] chars = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+      chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * URI encodes an object key the way SigV4 expects it in the canonical request, every byte but the
+   * unreserved characters and slashes.
+   */
+  public static String encodePath(String key) {
+    final StringBuilder encoded = new StringBuilder(key.length() + 16);
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      final char c = (char) (b & 0xff);
+      if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+        || c == '-' || c == '_' || c == '.' || c == '~' || c == '/') {
+        encoded.append(c);
+      } else {
+        encoded.append('%').append(Character.toUpperCase(HEX[(b >> 4) & 0xf])).append(Character.toUpperCase(HEX[b & 0xf]));
+      }
+    }
+    return encoded.toString();
+  }
+
+  private static final class SigningKey {
+    private final String date;
+    private final byte[] key;
+
+    SigningKey(String date, byte[] key) {
+      this.date = date;
+      this.key = key;
+    }
+  }
+
+  private static final class AmzDate {
+    private final long second;
+    private final String value;
+
+    AmzDate(long second, String value) {
+      this.second = second;
+      this.value = value;
+    }
+  }
+}
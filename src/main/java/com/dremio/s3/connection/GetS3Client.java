@@ -1,11 +1,14 @@
 package com.dremio.s3.connection;
 
+import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import com.dremio.metrics.RequestPhaseTimer;
 import com.dremio.s3.S3Configs;
 import com.dremio.utills.ApacheHttpConnectionUtil;
 import com.dremio.utills.NamedThreadFactory;
@@ -14,31 +17,54 @@ import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.awscore.client.builder.AwsAsyncClientBuilder;
-import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
 import software.amazon.awssdk.core.client.builder.SdkSyncClientBuilder;
 import software.amazon.awssdk.core.client.config.SdkAdvancedAsyncClientOption;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3BaseClientBuilder;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
 
 public class GetS3Client {
 
     private static final ExecutorService threadPool = Executors.newCachedThreadPool(new NamedThreadFactory("s3-async-read-"));
 
     public static S3Client getSyncClient(S3Configs s3Configs) {
-        return syncConfigClientBuilder(S3Client.builder(), s3Configs).build();
+        return syncConfigClientBuilder(S3Client.builder(), s3Configs, null).build();
+    }
+
+    /**
+     * @param pinnedAddress address all connections of the client go to, in place of resolving the endpoint
+     */
+    public static S3Client getSyncClient(S3Configs s3Configs, InetAddress pinnedAddress) {
+        return syncConfigClientBuilder(S3Client.builder(), s3Configs, pinnedAddress).build();
     }
 
     public static S3AsyncClient getAsyncClient(S3Configs s3Configs) {
-        return asyncConfigClientBuilder(S3AsyncClient.builder(), s3Configs).build();
+        return asyncConfigClientBuilder(S3AsyncClient.builder(), s3Configs, threadPool).build();
     }
 
-    private static <T extends SdkSyncClientBuilder<T,?> & AwsClientBuilder<T,?>> T syncConfigClientBuilder(T builder, S3Configs s3Configs) {
+    /**
+     * @param maxConcurrency maximum number of concurrent requests, and connections, of the client
+     * @param completionExecutor executor that completes the futures returned by the client
+     */
+    public static S3AsyncClient getAsyncClient(S3Configs s3Configs, int maxConcurrency, Executor completionExecutor) {
+        return asyncConfigClientBuilder(S3AsyncClient.builder(), s3Configs, completionExecutor)
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder().maxConcurrency(maxConcurrency))
+                .build();
+    }
+
+    private static <T extends SdkSyncClientBuilder<T,?> & S3BaseClientBuilder<T,?>> T syncConfigClientBuilder(T builder, S3Configs s3Configs, InetAddress pinnedAddress) {
 
         // Note that AWS SDKv2 client will close the credentials provider if needed when the client is closed
         builder.credentialsProvider(getAsync2Provider(s3Configs))
-                .httpClientBuilder(ApacheHttpConnectionUtil.initConnectionSettings(s3Configs));
+                .httpClientBuilder(ApacheHttpConnectionUtil.initConnectionSettings(s3Configs, pinnedAddress));
+        RequestPhaseTimer phaseTimer = RequestPhaseTimer.shared(s3Configs);
+        if (phaseTimer != null) {
+            builder.overrideConfiguration(c -> c.addExecutionInterceptor(phaseTimer.interceptor())
+                    .addMetricPublisher(phaseTimer.metricPublisher()));
+        }
         Optional<String> endpoint = Optional.ofNullable(s3Configs.getEndpoint());
 
         endpoint.ifPresent(e -> {
@@ -47,23 +73,27 @@ public class GetS3Client {
             } catch (URISyntaxException use) {
                 throw new RuntimeException(use.getMessage());
             }
+            // S3 compatible stores behind a custom endpoint rarely resolve virtual hosted bucket names
+            builder.serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
         });
         builder.region(Region.of(s3Configs.getRegion()));
         return builder;
     }
 
-    private static <T extends AwsAsyncClientBuilder<T,?> & S3BaseClientBuilder<T,?>> T asyncConfigClientBuilder(T builder, S3Configs s3Configs) {
+    private static <T extends AwsAsyncClientBuilder<T,?> & S3BaseClientBuilder<T,?>> T asyncConfigClientBuilder(T builder, S3Configs s3Configs, Executor completionExecutor) {
 
-        builder.asyncConfiguration(b -> b.advancedOption(SdkAdvancedAsyncClientOption.FUTURE_COMPLETION_EXECUTOR, threadPool))
+        builder.asyncConfiguration(b -> b.advancedOption(SdkAdvancedAsyncClientOption.FUTURE_COMPLETION_EXECUTOR, completionExecutor))
                 .credentialsProvider(getAsync2Provider(s3Configs));
         builder.region(Region.of(s3Configs.getRegion()));
-        Optional<String> endpoint = Optional.of(s3Configs.getEndpoint());
+        Optional<String> endpoint = Optional.ofNullable(s3Configs.getEndpoint());
         endpoint.ifPresent(e -> {
             try {
                 builder.endpointOverride(new URI(e));
             } catch (URISyntaxException use) {
                 throw new RuntimeException(use.getMessage());
             }
+            // S3 compatible stores behind a custom endpoint rarely resolve virtual hosted bucket names
+            builder.serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build());
         });
         return builder;
     }
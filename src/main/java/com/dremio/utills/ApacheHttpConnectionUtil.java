@@ -16,11 +16,13 @@
 
 package com.dremio.utills;
 
+import java.net.InetAddress;
 import java.time.Duration;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.dremio.metrics.RequestPhaseTimer;
 import com.dremio.s3.S3Configs;
 
 import software.amazon.awssdk.http.SdkHttpClient;
@@ -36,12 +38,28 @@ public final class ApacheHttpConnectionUtil {
   }
 
   public static SdkHttpClient.Builder<?> initConnectionSettings(S3Configs conf) {
+    return initConnectionSettings(conf, null);
+  }
+
+  /**
+   * @param pinnedAddress address every connection of the client is opened to, whatever host it is for,
+   *                      or null to resolve hosts normally
+   */
+  public static SdkHttpClient.Builder<?> initConnectionSettings(S3Configs conf, InetAddress pinnedAddress) {
     final ApacheHttpClient.Builder httpBuilder = ApacheHttpClient.builder();
     httpBuilder.maxConnections(1500);
     httpBuilder.connectionTimeout(
             Duration.ofSeconds(100));
     httpBuilder.socketTimeout(
             Duration.ofSeconds(100));
+    final RequestPhaseTimer phaseTimer = RequestPhaseTimer.shared(conf);
+    if (phaseTimer != null) {
+      httpBuilder.dnsResolver(phaseTimer.dnsResolver());
+      httpBuilder.socketFactory(phaseTimer.socketFactory());
+    }
+    if (pinnedAddress != null) {
+      httpBuilder.dnsResolver(host -> new InetAddress[] {pinnedAddress});
+    }
 
     return httpBuilder;
   }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2017-2019 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.dremio.utills;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.zip.Checksum;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * CRC32C (Castagnoli) checksums, as used by S3 additional checksums.
+ * <p>
+ * On JDK 9+ this uses {@code java.util.zip.CRC32C}, which the JIT replaces with hardware CRC instructions.
+ * On JDK 8 it falls back to Guava's table driven implementation.
+ */
+public final class Crc32c {
+  private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(Crc32c.class);
+
+  // reversed Castagnoli polynomial
+  private static final int POLYNOMIAL = 0x82F63B78;
+  private static final MethodHandle JDK_CRC32C = jdkCrc32c();
+
+  private Crc32c() {
+  }
+
+  public static Checksum newChecksum() {
+    if (JDK_CRC32C != null) {
+      try {
+        return (Checksum) JDK_CRC32C.invoke();
+      } catch (Throwable t) {
+        throw new IllegalStateException("Unable to create java.util.zip.CRC32C", t);
+      }
+    }
+    return new GuavaCrc32c();
+  }
+
+  public static boolean isIntrinsic() {
+    return JDK_CRC32C != null;
+  }
+
+  /**
+   * Combines the checksums of two consecutive byte sequences into the checksum of their concatenation,
+   * the same way zlib's crc32_combine does for CRC32.
+   * @param crc1 checksum of the first sequence
+   * @param crc2 checksum of the second sequence
+   * @param len2 length of the second sequence
+   */
+  public static long combine(long crc1, long crc2, long len2) {
+    if (len2 <= 0) {
+      return crc1;
+    }
+    int[] odd = new int[32];
+    int[] even = new int[32];
+
+    // operator for one zero bit
+    odd[0] = POLYNOMIAL;
+    int row = 1;
+    for (int n = 1; n < 32; n++) {
+      odd[n] = row;
+      row <<= 1;
+    }
+    // operators for two and four zero bits
+    square(even, odd);
+    square(odd, even);
+
+    int crc = (int) crc1;
+    do {
+      // apply len2 zero bytes to crc1, one bit of len2 at a time
+      square(even, odd);
+      if ((len2 & 1) != 0) {
+        crc = times(even, crc);
+      }
+      len2 >>>= 1;
+      if (len2 == 0) {
+        break;
+      }
+      square(odd, even);
+      if ((len2 & 1) != 0) {
+        crc = times(odd, crc);
+      }
+      len2 >>>= 1;
+    } while (len2 != 0);
+    return (crc ^ (int) crc2) & 0xFFFFFFFFL;
+  }
+
+  private static int times(int[] matrix, int vector) {
+    int sum = 0;
+    for (int i = 0; vector != 0; i++, vector >>>= 1) {
+      if ((vector & 1) != 0) {
+        sum ^= matrix[i];
+      }
+    }
+    return sum;
+  }
+
+  private static void square(int[] square, int[] matrix) {
+    for (int n = 0; n < 32; n++) {
+      square[n] = times(matrix, matrix[n]);
+    }
+  }
+
+  private static MethodHandle jdkCrc32c() {
+    try {
+      Class<?> crc32c = Class.forName("java.util.zip.CRC32C");
+      return MethodHandles.publicLookup().findConstructor(crc32c, MethodType.methodType(void.class));
+    } catch (ReflectiveOperationException e) {
+      logger.info("java.util.zip.CRC32C is not available, using a table driven CRC32C");
+      return null;
+    }
+  }
+
+  private static final class GuavaCrc32c implements Checksum {
+    private Hasher hasher = Hashing.crc32c().newHasher();
+
+    @Override
+    public void update(int b) {
+      hasher.putByte((byte) b);
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+      hasher.putBytes(b, off, len);
+    }
+
+    @Override
+    public long getValue() {
+      // a Hasher can only be finished once, so the value must only be read after the last update
+      return hasher.hash().asInt() & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+      hasher = Hashing.crc32c().newHasher();
+    }
+  }
+}
@@ -6,9 +6,12 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.async.AsyncResponseTransformer;
-import software.amazon.awssdk.regions.Region;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dremio.s3.ByteBufResponseTransformer;
+
+import io.netty.buffer.ByteBuf;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
@@ -16,19 +19,21 @@ import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 /**
  * This class is used across the project whenever a query to the AWS API has to be made to read a part of an S3 object.
  * It takes the client and object details as constructor parameters and uses them to make a call via the AWS API.
+ * The response body is written directly into the destination buffer, which is returned once the read completes.
  */
 public class ReaderUtil implements Callable {
+    private static final Logger logger = LoggerFactory.getLogger(ReaderUtil.class);
 
     private final String bucket;
     private final String path;
-    private final int offset;
+    private final long offset;
     private final int len;
-    private  byte arr[];
+    private final ByteBuf dst;
     private final int ID;
     private S3AsyncClient client;
 
-    public ReaderUtil(int ID, int len, int offset, String path, String bucket, S3AsyncClient client) {
-        this.arr = new byte[len];
+    public ReaderUtil(int ID, int len, long offset, String path, String bucket, S3AsyncClient client, ByteBuf dst) {
+        this.dst = dst;
         this.path = path;
         this.offset = offset;
         this.len = len;
@@ -40,7 +45,6 @@ public class ReaderUtil implements Callable {
     public Object call() throws Exception {
 
         Instant t1 = Instant.now();
-        Region region = Region.US_WEST_2;
 
         final GetObjectRequest.Builder requestBuilder = GetObjectRequest.builder()
                 .bucket(bucket)
@@ -48,17 +52,18 @@ public class ReaderUtil implements Callable {
                 .range(range(offset, len))
                 ;
 
-        CompletableFuture<ResponseBytes<GetObjectResponse>> response = client.getObject(requestBuilder.build(), AsyncResponseTransformer.toBytes());
+        final ByteBufResponseTransformer transformer = new ByteBufResponseTransformer(dst, dst.writerIndex(), len);
+        CompletableFuture<GetObjectResponse> response = client.getObject(requestBuilder.build(), transformer);
 
         try {
-            ResponseBytes<GetObjectResponse> data = response.get();
-            arr = data.asByteArray();
+            response.get();
+            // the transformer fails the read unless exactly len bytes arrived
+            dst.writerIndex(dst.writerIndex() + transformer.getBytesWritten());
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         } catch (ExecutionException e) {
             throw new RuntimeException(e);
         }
-        response.join();
 
         Instant t2 = Instant.now();
         Duration d = Duration.between(t1,t2);
@@ -66,9 +71,9 @@ public class ReaderUtil implements Callable {
         long timeInMilli = d.toMillis();
         //metrics.updateMetrics(timeInMilli);
 
-        System.out.println("Completed the read to the column number  - " + ID + " with thread ID  - " + Thread.currentThread().getId()
-                + "The time taken for this read was  - " + d.toMillis());
-        return arr;
+        logger.debug("Completed the read to the column number - {} with thread ID - {}. The time taken for this read was - {}", ID,
+                Thread.currentThread().getId(), d.toMillis());
+        return dst;
     }
 
     protected static String range(long start, long len) {
@@ -12,8 +12,11 @@ import com.dremio.s3.connection.SimpleAWSCredentialsProvider;
 public class S3Util {
 
     public static Long getObjectSize(S3Configs s3Configs) {
-        ObjectMetadata meta = getV1Client(s3Configs).getObjectMetadata(s3Configs.getBucket(), s3Configs.getPath());
-        return meta.getContentLength();
+        return getObjectMetadata(s3Configs).getContentLength();
+    }
+
+    public static ObjectMetadata getObjectMetadata(S3Configs s3Configs) {
+        return getV1Client(s3Configs).getObjectMetadata(s3Configs.getBucket(), s3Configs.getPath());
     }
 
     private static AmazonS3 getV1Client(S3Configs s3Configs) {
@@ -41,6 +44,7 @@ public class S3Util {
         if (epr != null) {
             // an endpoint binding was constructed: use it.
             builder.withEndpointConfiguration(epr);
+            builder.withPathStyleAccessEnabled(true);
         } else {
             // no idea what the endpoint is, so tell the SDK
             // to work it out at the cost of an extra HEAD request
@@ -0,0 +1,85 @@
+package com.dremio.writer;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Bytes to upload, read part by part into buffers owned by the uploader.
+ */
+public interface UploadSource extends AutoCloseable {
+
+    long size();
+
+    /**
+     * Writes len bytes starting at offset into dst, advancing its writer index.
+     */
+    void read(long offset, int len, ByteBuf dst) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Uploads a local file, read with positional reads so parts can be filled concurrently.
+     */
+    static UploadSource file(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        final long size = channel.size();
+        return new UploadSource() {
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public void read(long offset, int len, ByteBuf dst) throws IOException {
+                int total = 0;
+                while (total < len) {
+                    int n = dst.writeBytes(channel, offset + total, len - total);
+                    if (n < 0) {
+                        throw new IOException("Unexpected end of " + path + " at offset " + (offset + total));
+                    }
+                    total += n;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    /**
+     * Uploads generated bytes, so the measurement does not depend on the local disk. The bytes are random
+     * and repeat every block, which keeps generation cheap without making the parts compressible.
+     */
+    static UploadSource synthetic(long size) {
+        final byte[] block = new byte[1 << 20];
+        new Random(size).nextBytes(block);
+        return new UploadSource() {
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public void read(long offset, int len, ByteBuf dst) {
+                long position = offset;
+                int remaining = len;
+                while (remaining > 0) {
+                    int blockOffset = (int) (position % block.length);
+                    int n = Math.min(remaining, block.length - blockOffset);
+                    dst.writeBytes(block, blockOffset, n);
+                    position += n;
+                    remaining -= n;
+                }
+            }
+        };
+    }
+}
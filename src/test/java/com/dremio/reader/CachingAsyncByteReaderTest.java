@@ -0,0 +1,133 @@
+package com.dremio.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+
+public class CachingAsyncByteReaderTest {
+
+    private static final int BLOCK = 64;
+    private static final byte[] OBJECT = new byte[10 * BLOCK + 7];
+
+    static {
+        for (int i = 0; i < OBJECT.length; i++) {
+            OBJECT[i] = (byte) (i * 31);
+        }
+    }
+
+    @Test
+    public void slicesOfCachedBlocksAreReadOnly() throws Exception {
+        final HotRangeCache cache = new HotRangeCache(16 * BLOCK, BLOCK);
+        final CachingAsyncByteReader reader = new CachingAsyncByteReader(new ArrayReader("etag"), cache, "object",
+                OBJECT.length, "etag");
+        for (int i = 0; i < 3; i++) {
+            reader.readSlice(10, 2 * BLOCK, ReadPriority.BULK).get().release();
+        }
+        for (int len : new int[] {BLOCK / 2, 2 * BLOCK}) {
+            final ByteBuf slice = reader.readSlice(10, len, ReadPriority.BULK).get();
+            assertTrue(slice.isReadOnly());
+            try {
+                slice.setByte(0, 1);
+                fail("A slice of a cached block must not be writable");
+            } catch (ReadOnlyBufferException expected) {
+                // the cache is shared by every reader
+            } finally {
+                slice.release();
+            }
+        }
+        assertArrayEquals(Arrays.copyOfRange(OBJECT, 10, 10 + 2 * BLOCK), reader.readFully(10, 2 * BLOCK).get());
+        assertEquals(cache.getUsedBytes(), cache.getLiveBytes());
+    }
+
+    @Test
+    public void firstTailReadPassesTheETagOn() throws Exception {
+        final HotRangeCache cache = new HotRangeCache(16 * BLOCK, BLOCK);
+        final ArrayReader delegate = new ArrayReader("etag");
+        final CachingAsyncByteReader reader = new CachingAsyncByteReader(delegate, cache, "object", OBJECT.length, null);
+
+        final ObjectTail first = reader.readTail(3 * BLOCK).get();
+        assertEquals("etag", first.getETag());
+        assertEquals(OBJECT.length, first.getObjectLength());
+        assertEquals(1, delegate.tails.get());
+
+        for (int i = 0; i < 3; i++) {
+            final ObjectTail tail = reader.readTail(2 * BLOCK).get();
+            assertEquals("etag", tail.getETag());
+            assertArrayEquals(Arrays.copyOfRange(OBJECT, OBJECT.length - 2 * BLOCK, OBJECT.length), tail.getBytes());
+        }
+        assertEquals(1, delegate.tails.get());
+        assertEquals(0, delegate.reads.get());
+    }
+
+    @Test
+    public void blocksOfAnEarlierVersionAreNotServed() throws Exception {
+        final HotRangeCache cache = new HotRangeCache(16 * BLOCK, BLOCK);
+        final ArrayReader first = new ArrayReader("v1");
+        final CachingAsyncByteReader reader = new CachingAsyncByteReader(first, cache, "object", OBJECT.length, "v1");
+        for (int i = 0; i < 3; i++) {
+            reader.readFully(0, BLOCK).get();
+        }
+        assertEquals(1, first.reads.get());
+
+        final ArrayReader second = new ArrayReader("v2");
+        final CachingAsyncByteReader rewritten = new CachingAsyncByteReader(second, cache, "object", OBJECT.length, "v2");
+        rewritten.readFully(0, BLOCK).get();
+        assertEquals(1, second.reads.get());
+    }
+
+    @Test
+    public void readsBypassTheCacheUntilTheVersionIsKnown() throws Exception {
+        final HotRangeCache cache = new HotRangeCache(16 * BLOCK, BLOCK);
+        final ArrayReader delegate = new ArrayReader("etag");
+        final CachingAsyncByteReader reader = new CachingAsyncByteReader(delegate, cache, "object");
+        for (int i = 0; i < 3; i++) {
+            reader.readFully(0, BLOCK).get();
+        }
+        assertEquals(3, delegate.reads.get());
+        assertEquals(0, cache.getUsedBytes());
+
+        reader.readTail(BLOCK).get();
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(Arrays.copyOf(OBJECT, BLOCK), reader.readFully(0, BLOCK).get());
+        }
+        assertEquals(4, delegate.reads.get());
+    }
+
+    /**
+     * Serves {@link #OBJECT} from memory and counts the reads that reach it.
+     */
+    private static final class ArrayReader implements AsyncByteReader {
+        private final String eTag;
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicInteger tails = new AtomicInteger();
+
+        ArrayReader(String eTag) {
+            this.eTag = eTag;
+        }
+
+        @Override
+        public CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset) {
+            reads.incrementAndGet();
+            dst.setBytes(dstOffset, OBJECT, (int) offset, len);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<ObjectTail> readTail(int len) {
+            tails.incrementAndGet();
+            final int tailLen = Math.min(len, OBJECT.length);
+            return CompletableFuture.completedFuture(new ObjectTail(
+                    Arrays.copyOfRange(OBJECT, OBJECT.length - tailLen, OBJECT.length), OBJECT.length, eTag));
+        }
+    }
+}
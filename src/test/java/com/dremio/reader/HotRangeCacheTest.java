@@ -0,0 +1,158 @@
+package com.dremio.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class HotRangeCacheTest {
+
+    private static final int BLOCK = 16;
+    private static final String OBJECT = "bucket/object@v1";
+
+    @Test
+    public void evictedBlockIsFreedOnceTheLastSliceIsReleased() {
+        final HotRangeCache cache = new HotRangeCache(2 * BLOCK, BLOCK);
+        lookUpAndOffer(cache, 0, 1);
+        lookUpAndOffer(cache, 1, 1);
+        final ByteBuf held = cache.get(OBJECT, 0, BLOCK);
+        assertNotNull(held);
+
+        // the first sweep passes the referenced block 0 and evicts block 1, the second evicts block 0
+        lookUpAndOffer(cache, 2, 5);
+        lookUpAndOffer(cache, 3, 5);
+        assertNull(cache.get(OBJECT, 0, BLOCK));
+        assertNull(cache.get(OBJECT, 1, BLOCK));
+        assertEquals(2 * BLOCK, cache.getUsedBytes());
+
+        // the cache gave up its reference, the slice keeps the block alive and readable
+        assertEquals(1, held.refCnt());
+        assertEquals(3 * BLOCK, cache.getLiveBytes());
+        assertEquals(5, held.getByte(held.readerIndex() + 5));
+
+        held.release();
+        assertEquals(0, held.refCnt());
+        assertEquals(cache.getUsedBytes(), cache.getLiveBytes());
+    }
+
+    @Test
+    public void hitsAreReleasedBackToTheCache() {
+        final HotRangeCache cache = new HotRangeCache(4 * BLOCK, BLOCK);
+        lookUpAndOffer(cache, 7, 1);
+        for (int i = 0; i < 100; i++) {
+            final ByteBuf hit = cache.get(OBJECT, 7, BLOCK);
+            assertEquals(2, hit.refCnt());
+            assertEquals(7, hit.getByte(hit.readerIndex()));
+            hit.release();
+        }
+        final ByteBuf hit = cache.get(OBJECT, 7, BLOCK);
+        assertEquals(2, hit.refCnt());
+        hit.release();
+        assertEquals(BLOCK, cache.getLiveBytes());
+    }
+
+    @Test
+    public void admissionKeepsHotBlockOverScanBlock() {
+        final HotRangeCache cache = new HotRangeCache(BLOCK, BLOCK);
+        lookUpAndOffer(cache, 0, 5);
+        // a scan reads each block once
+        for (long block = 100; block < 110; block++) {
+            lookUpAndOffer(cache, block, 1);
+        }
+        final ByteBuf hot = cache.get(OBJECT, 0, BLOCK);
+        assertNotNull(hot);
+        hot.release();
+        assertEquals(BLOCK, cache.getUsedBytes());
+        assertEquals(BLOCK, cache.getLiveBytes());
+    }
+
+    @Test
+    public void clockGivesReferencedBlocksASecondChance() {
+        final HotRangeCache cache = new HotRangeCache(2 * BLOCK, BLOCK);
+        lookUpAndOffer(cache, 0, 1);
+        lookUpAndOffer(cache, 1, 1);
+        cache.get(OBJECT, 0, BLOCK).release();
+
+        lookUpAndOffer(cache, 2, 3);
+        final ByteBuf kept = cache.get(OBJECT, 0, BLOCK);
+        assertNotNull(kept);
+        kept.release();
+        assertNull(cache.get(OBJECT, 1, BLOCK));
+    }
+
+    @Test
+    public void rejectedLongerCopyKeepsTheShorterOne() {
+        final HotRangeCache cache = new HotRangeCache(BLOCK + BLOCK * 3 / 4, BLOCK);
+        lookUpAndOffer(cache, 0, 3, BLOCK / 2);
+        lookUpAndOffer(cache, 1, 6, BLOCK);
+
+        // making room for the whole of block 0 would evict block 1, which is read more often
+        cache.offer(OBJECT, 0, pattern(0, BLOCK), 0, BLOCK);
+        assertNull(cache.get(OBJECT, 0, BLOCK));
+        final ByteBuf shorter = cache.get(OBJECT, 0, BLOCK / 2);
+        assertNotNull(shorter);
+        shorter.release();
+        assertEquals(BLOCK / 2 + BLOCK, cache.getUsedBytes());
+    }
+
+    @Test
+    public void admittedLongerCopyReplacesTheShorterOne() {
+        final HotRangeCache cache = new HotRangeCache(2 * BLOCK, BLOCK);
+        lookUpAndOffer(cache, 0, 6, BLOCK / 2);
+        lookUpAndOffer(cache, 1, 1, BLOCK);
+
+        cache.offer(OBJECT, 0, pattern(0, BLOCK), 0, BLOCK);
+        final ByteBuf whole = cache.get(OBJECT, 0, BLOCK);
+        assertNotNull(whole);
+        whole.release();
+        assertEquals(2 * BLOCK, cache.getUsedBytes());
+        assertEquals(2 * BLOCK, cache.getLiveBytes());
+    }
+
+    @Test
+    public void halvingLetsNewBlocksReplaceStaleOnes() {
+        final HotRangeCache cache = new HotRangeCache(BLOCK, BLOCK);
+        // without halving these lookups would saturate the counters of block 0, and block 1 could at best tie
+        // with it and never get in
+        lookUpAndOffer(cache, 0, 20);
+        for (int i = 0; i < 40; i++) {
+            assertNull(cache.get(OBJECT, 1, BLOCK));
+        }
+        cache.offer(OBJECT, 1, pattern(1, BLOCK), 0, BLOCK);
+        final ByteBuf fresh = cache.get(OBJECT, 1, BLOCK);
+        assertNotNull(fresh);
+        fresh.release();
+        assertNull(cache.get(OBJECT, 0, BLOCK));
+    }
+
+    private static void lookUpAndOffer(HotRangeCache cache, long block, int lookups) {
+        lookUpAndOffer(cache, block, lookups, BLOCK);
+    }
+
+    private static void lookUpAndOffer(HotRangeCache cache, long block, int lookups, int length) {
+        for (int i = 0; i < lookups; i++) {
+            final ByteBuf hit = cache.get(OBJECT, block, length);
+            if (hit != null) {
+                hit.release();
+            }
+        }
+        final ByteBuf src = pattern(block, length);
+        cache.offer(OBJECT, block, src, 0, length);
+        src.release();
+    }
+
+    /**
+     * @return bytes that start with the block number and count up from there
+     */
+    private static ByteBuf pattern(long block, int length) {
+        final ByteBuf buf = Unpooled.buffer(length);
+        for (int i = 0; i < length; i++) {
+            buf.writeByte((int) (block + i));
+        }
+        return buf;
+    }
+}
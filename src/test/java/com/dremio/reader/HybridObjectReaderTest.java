@@ -0,0 +1,134 @@
+package com.dremio.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+
+public class HybridObjectReaderTest {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final long OBJECT_SIZE = 16L * CHUNK_SIZE;
+
+    @Test
+    public void streamThatFinishesAtOnceReadsEverything() throws Exception {
+        final RecordingReader delegate = new RecordingReader(0);
+        final CompletableFuture<Void> read = reader(delegate).readObject();
+        final CompletableFuture<String> coverage = read.thenApply(v -> delegate.coverage());
+        read.get(10, TimeUnit.SECONDS);
+        assertEquals("[0, " + OBJECT_SIZE + ")", coverage.get());
+    }
+
+    @Test
+    public void splitRacingTheEndOfTheStreamReadsEverything() throws Exception {
+        // the stream stalls past its first buffer, so the sampler splits it right behind its claim and the
+        // stream reaches its new end as soon as it resumes
+        int splits = 0;
+        for (int i = 0; i < 50; i++) {
+            final RecordingReader delegate = new RecordingReader(2 + i % 4);
+            final CompletableFuture<Void> read = reader(delegate).readObject();
+            // taken when the read completes, so that a split issued after it does not count
+            final CompletableFuture<String> coverage = read.thenApply(v -> delegate.coverage());
+            read.get(10, TimeUnit.SECONDS);
+            assertEquals("run " + i, "[0, " + OBJECT_SIZE + ")", coverage.get());
+            splits += delegate.streamedBytes() < OBJECT_SIZE ? 1 : 0;
+        }
+        assertTrue("the stream was never split", splits > 0);
+    }
+
+    private static HybridObjectReader reader(AsyncByteReader delegate) {
+        // splits at the first sample that sees the stream moving
+        return new HybridObjectReader(delegate, OBJECT_SIZE, CHUNK_SIZE, 0, null, 1, 0.5, 0);
+    }
+
+    /**
+     * Streams the object from its start, stalling once past the first chunk, and completes the range reads
+     * at once. Records which bytes were streamed and which were read as ranges.
+     */
+    private static final class RecordingReader implements AsyncByteReader {
+        private final long stallMillis;
+        private final List<long[]> ranges = new ArrayList<>();
+        private long streamed;
+
+        RecordingReader(long stallMillis) {
+            this.stallMillis = stallMillis;
+        }
+
+        @Override
+        public synchronized CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset) {
+            ranges.add(new long[] {offset, offset + len});
+            return completedFuture;
+        }
+
+        @Override
+        public CompletableFuture<InputStream> openStream(long offset, long len) {
+            return CompletableFuture.completedFuture(new InputStream() {
+                private boolean stalled;
+
+                @Override
+                public int read() throws IOException {
+                    final byte[] b = new byte[1];
+                    return read(b, 0, 1) < 0 ? -1 : b[0];
+                }
+
+                @Override
+                public int read(byte[] b, int off, int n) throws IOException {
+                    synchronized (RecordingReader.this) {
+                        if (streamed >= len) {
+                            return -1;
+                        }
+                    }
+                    if (stallMillis > 0 && !stalled && streamed >= CHUNK_SIZE) {
+                        stalled = true;
+                        try {
+                            Thread.sleep(stallMillis);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException(e);
+                        }
+                    }
+                    synchronized (RecordingReader.this) {
+                        final int count = (int) Math.min(n, len - streamed);
+                        streamed += count;
+                        return count;
+                    }
+                }
+            });
+        }
+
+        synchronized long streamedBytes() {
+            return streamed;
+        }
+
+        /**
+         * The bytes read so far as one contiguous range, or every piece if there is a gap or an overlap.
+         */
+        synchronized String coverage() {
+            final List<long[]> pieces = new ArrayList<>(ranges);
+            pieces.add(new long[] {0, streamed});
+            pieces.sort(Comparator.comparingLong(r -> r[0]));
+            final StringBuilder all = new StringBuilder();
+            long end = 0;
+            boolean contiguous = true;
+            for (long[] piece : pieces) {
+                if (piece[0] == piece[1]) {
+                    continue;
+                }
+                contiguous &= piece[0] == end;
+                end = piece[1];
+                all.append('[').append(piece[0]).append(", ").append(piece[1]).append(')');
+            }
+            return contiguous ? "[0, " + end + ")" : all.toString();
+        }
+    }
+}
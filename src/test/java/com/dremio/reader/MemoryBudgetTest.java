@@ -0,0 +1,62 @@
+package com.dremio.reader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+public class MemoryBudgetTest {
+
+    @Test
+    public void reservationsWithinTheLimitAreGrantedAtOnce() {
+        final MemoryBudget budget = new MemoryBudget(100);
+        assertTrue(budget.reserve(60).isDone());
+        assertTrue(budget.reserve(40).isDone());
+        assertEquals(100, budget.getUsedBytes());
+        budget.release(60);
+        budget.release(40);
+        assertEquals(0, budget.getUsedBytes());
+        assertEquals(100, budget.getPeakBytes());
+    }
+
+    @Test
+    public void reservationsAreGrantedInOrder() {
+        final MemoryBudget budget = new MemoryBudget(100);
+        budget.reserve(80);
+        final CompletableFuture<Void> large = budget.reserve(50);
+        // fits, but waits behind the large one so that it is not starved
+        final CompletableFuture<Void> small = budget.reserve(10);
+        assertFalse(large.isDone());
+        assertFalse(small.isDone());
+
+        budget.release(80);
+        assertTrue(large.isDone());
+        assertTrue(small.isDone());
+        assertEquals(60, budget.getUsedBytes());
+    }
+
+    @Test
+    public void cancelledReservationIsDroppedAndUnblocksTheNext() {
+        final MemoryBudget budget = new MemoryBudget(100);
+        budget.reserve(80);
+        final CompletableFuture<Void> large = budget.reserve(50);
+        final CompletableFuture<Void> small = budget.reserve(20);
+        assertFalse(small.isDone());
+
+        large.cancel(false);
+        assertTrue(small.isDone());
+        assertEquals(100, budget.getUsedBytes());
+
+        budget.release(80);
+        budget.release(20);
+        assertEquals(0, budget.getUsedBytes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void reservationLargerThanTheLimitIsRejected() {
+        new MemoryBudget(100).reserve(101);
+    }
+}
@@ -0,0 +1,151 @@
+package com.dremio.reader;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.parquet.format.ColumnChunk;
+import org.apache.parquet.format.ColumnMetaData;
+import org.apache.parquet.format.CompressionCodec;
+import org.apache.parquet.format.Encoding;
+import org.apache.parquet.format.FieldRepetitionType;
+import org.apache.parquet.format.FileMetaData;
+import org.apache.parquet.format.KeyValue;
+import org.apache.parquet.format.RowGroup;
+import org.apache.parquet.format.SchemaElement;
+import org.apache.parquet.format.Type;
+import org.apache.parquet.format.Util;
+import org.apache.parquet.format.converter.ParquetMetadataConverter;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.junit.Test;
+
+public class ProjectedFooterDecoderTest {
+
+    private static final int ROW_GROUPS = 4;
+    private static final long CHUNK_SIZE = 1000;
+    private static final List<String> LEAVES = Arrays.asList("a.b", "a.c", "d");
+
+    @Test
+    public void projectedColumnsAreDecodedLikeTheFullFooter() throws IOException {
+        final byte[] footer = footer();
+        final FileMetaData full = Util.readFileMetaData(new ByteArrayInputStream(footer));
+        final FileMetaData projected = ProjectedFooterDecoder.decode(footer,
+                FooterFilter.all().columns(Collections.singletonList("a.c")));
+
+        assertEquals(full.getSchema(), projected.getSchema());
+        assertEquals(full.getNum_rows(), projected.getNum_rows());
+        assertEquals(full.getKey_value_metadata(), projected.getKey_value_metadata());
+        assertEquals(full.getCreated_by(), projected.getCreated_by());
+        assertEquals(ROW_GROUPS, projected.getRow_groups().size());
+        for (int i = 0; i < ROW_GROUPS; i++) {
+            final RowGroup fullRowGroup = full.getRow_groups().get(i);
+            final RowGroup rowGroup = projected.getRow_groups().get(i);
+            assertEquals(Collections.singletonList(fullRowGroup.getColumns().get(1)), rowGroup.getColumns());
+            assertEquals(fullRowGroup.getNum_rows(), rowGroup.getNum_rows());
+            assertEquals(fullRowGroup.getTotal_byte_size(), rowGroup.getTotal_byte_size());
+            assertEquals(fullRowGroup.getFile_offset(), rowGroup.getFile_offset());
+        }
+    }
+
+    @Test
+    public void allColumnsDecodeTheWholeFooter() throws IOException {
+        final byte[] footer = footer();
+        assertEquals(Util.readFileMetaData(new ByteArrayInputStream(footer)),
+                ProjectedFooterDecoder.decode(footer, FooterFilter.all().columns(LEAVES)));
+    }
+
+    @Test
+    public void rowGroupsAreSelectedLikeTheParquetFilters() throws IOException {
+        final byte[] footer = footer();
+        final List<FooterFilter> filters = new ArrayList<>();
+        for (long start = 0; start < ROW_GROUPS * 3 * CHUNK_SIZE; start += 2500) {
+            filters.add(FooterFilter.all().rowGroupsInRange(start, start + 2500));
+        }
+        filters.add(FooterFilter.all().rowGroupsInRange(0, Long.MAX_VALUE));
+        // the first row group starts at its dictionary page
+        filters.add(FooterFilter.all().rowGroupsStartingAt(4, 4 + 3 * CHUNK_SIZE, 12345));
+        for (FooterFilter filter : filters) {
+            final List<Long> expected = new ArrayList<>();
+            final ParquetMetadata metadata = new ParquetMetadataConverter()
+                    .readParquetMetadata(new ByteArrayInputStream(footer), filter.toMetadataFilter());
+            for (BlockMetaData block : metadata.getBlocks()) {
+                expected.add(block.getStartingPos());
+            }
+            final List<Long> selected = new ArrayList<>();
+            for (RowGroup rowGroup : ProjectedFooterDecoder.decode(footer, filter.columns(Collections.singletonList("d"))).getRow_groups()) {
+                selected.add(rowGroup.getFile_offset());
+            }
+            assertEquals(expected, selected);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFooterFails() throws IOException {
+        final byte[] footer = footer();
+        ProjectedFooterDecoder.decode(Arrays.copyOf(footer, footer.length / 2), FooterFilter.all().columns(LEAVES));
+    }
+
+    /**
+     * A footer of a file with the schema a { b, c }, d and row groups of three column chunks each, laid out
+     * one after the other after the magic bytes.
+     */
+    private static byte[] footer() throws IOException {
+        final List<SchemaElement> schema = new ArrayList<>();
+        final SchemaElement root = new SchemaElement("schema");
+        root.setNum_children(2);
+        schema.add(root);
+        final SchemaElement group = new SchemaElement("a");
+        group.setNum_children(2);
+        group.setRepetition_type(FieldRepetitionType.OPTIONAL);
+        schema.add(group);
+        schema.add(leaf("b", Type.INT64));
+        schema.add(leaf("c", Type.BYTE_ARRAY));
+        schema.add(leaf("d", Type.INT32));
+
+        final List<RowGroup> rowGroups = new ArrayList<>();
+        long pos = 4;
+        for (int i = 0; i < ROW_GROUPS; i++) {
+            final long rowGroupStart = pos;
+            final List<ColumnChunk> chunks = new ArrayList<>();
+            for (int c = 0; c < LEAVES.size(); c++) {
+                final ColumnMetaData meta = new ColumnMetaData(Type.INT64, Collections.singletonList(Encoding.PLAIN),
+                        Arrays.asList(LEAVES.get(c).split("\\.")), CompressionCodec.SNAPPY, 100 + i, 2 * CHUNK_SIZE,
+                        CHUNK_SIZE, pos);
+                if (c == 0 && i % 2 == 0) {
+                    // a dictionary page ahead of the data pages
+                    meta.setDictionary_page_offset(pos);
+                    meta.setData_page_offset(pos + 100);
+                }
+                final ColumnChunk chunk = new ColumnChunk(pos + CHUNK_SIZE);
+                chunk.setMeta_data(meta);
+                chunks.add(chunk);
+                pos += CHUNK_SIZE;
+            }
+            final RowGroup rowGroup = new RowGroup(chunks, 2 * CHUNK_SIZE * LEAVES.size(), 100 + i);
+            rowGroup.setFile_offset(rowGroupStart);
+            rowGroup.setTotal_compressed_size(CHUNK_SIZE * LEAVES.size());
+            rowGroups.add(rowGroup);
+        }
+        final FileMetaData metaData = new FileMetaData(1, schema, 400 + 6, rowGroups);
+        metaData.setKey_value_metadata(Collections.singletonList(new KeyValue("writer")));
+        metaData.setCreated_by("parquet-mr version 1.12.0 (build test)");
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Util.writeFileMetaData(metaData, out);
+        return out.toByteArray();
+    }
+
+    private static SchemaElement leaf(String name, Type type) {
+        final SchemaElement element = new SchemaElement(name);
+        element.setType(type);
+        element.setRepetition_type(FieldRepetitionType.OPTIONAL);
+        return element;
+    }
+}
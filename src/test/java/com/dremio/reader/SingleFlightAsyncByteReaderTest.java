@@ -0,0 +1,140 @@
+package com.dremio.reader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+public class SingleFlightAsyncByteReaderTest {
+
+    private static final byte[] OBJECT = new byte[1000];
+    // reads of different tests must not share their flights
+    private static final AtomicInteger objects = new AtomicInteger();
+
+    static {
+        for (int i = 0; i < OBJECT.length; i++) {
+            OBJECT[i] = (byte) (i * 7);
+        }
+    }
+
+    @Test
+    public void partialOverlapFetchesOnlyTheMissingRanges() throws Exception {
+        final PendingReader delegate = new PendingReader();
+        final String key = "object-" + objects.incrementAndGet();
+        final SingleFlightAsyncByteReader first = new SingleFlightAsyncByteReader(delegate, key);
+        final SingleFlightAsyncByteReader second = new SingleFlightAsyncByteReader(delegate, key);
+
+        final ByteBuf firstDst = Unpooled.buffer(100);
+        final CompletableFuture<Void> firstRead = first.readFully(100, 100, firstDst, 0);
+        final ByteBuf secondDst = Unpooled.buffer(260);
+        final CompletableFuture<Void> secondRead = second.readFully(50, 250, secondDst, 10);
+
+        assertEquals(Arrays.asList("100+100", "50+50", "200+100"), delegate.requested());
+        delegate.completeAll();
+        firstRead.get();
+        secondRead.get();
+        assertArrayEquals(Arrays.copyOfRange(OBJECT, 100, 200), bytes(firstDst, 0, 100));
+        assertArrayEquals(Arrays.copyOfRange(OBJECT, 50, 300), bytes(secondDst, 10, 250));
+    }
+
+    @Test
+    public void coveredReadWaitsForTheReadInFlight() throws Exception {
+        final PendingReader delegate = new PendingReader();
+        final String key = "object-" + objects.incrementAndGet();
+        final SingleFlightAsyncByteReader reader = new SingleFlightAsyncByteReader(delegate, key);
+
+        final ByteBuf leaderDst = Unpooled.buffer(300);
+        final CompletableFuture<Void> leader = reader.readFully(0, 300, leaderDst, 0);
+        final ByteBuf coveredDst = Unpooled.buffer(50);
+        final CompletableFuture<Void> covered = reader.readFully(120, 50, coveredDst, 0);
+
+        assertEquals(Arrays.asList("0+300"), delegate.requested());
+        assertFalse(covered.isDone());
+        delegate.completeAll();
+        // the attached read has its bytes before the read it attached to completes
+        assertTrue(covered.isDone());
+        leader.get();
+        assertArrayEquals(Arrays.copyOfRange(OBJECT, 120, 170), bytes(coveredDst, 0, 50));
+    }
+
+    @Test
+    public void attachedReadFetchesItselfWhenTheLeaderIsCancelled() throws Exception {
+        final PendingReader delegate = new PendingReader();
+        final String key = "object-" + objects.incrementAndGet();
+        final SingleFlightAsyncByteReader reader = new SingleFlightAsyncByteReader(delegate, key);
+
+        final CompletableFuture<Void> leader = reader.readFully(0, 100, Unpooled.buffer(100), 0);
+        final ByteBuf attachedDst = Unpooled.buffer(40);
+        final CompletableFuture<Void> attached = reader.readFully(30, 40, attachedDst, 0);
+
+        leader.cancel(true);
+        assertEquals(Arrays.asList("0+100", "30+40"), delegate.requested());
+        delegate.completeAll();
+        attached.get();
+        assertArrayEquals(Arrays.copyOfRange(OBJECT, 30, 70), bytes(attachedDst, 0, 40));
+    }
+
+    @Test
+    public void readAfterTheFlightLandedFetchesAgain() throws Exception {
+        final PendingReader delegate = new PendingReader();
+        final String key = "object-" + objects.incrementAndGet();
+        final SingleFlightAsyncByteReader reader = new SingleFlightAsyncByteReader(delegate, key);
+
+        reader.readFully(0, 100, Unpooled.buffer(100), 0);
+        delegate.completeAll();
+        reader.readFully(0, 100, Unpooled.buffer(100), 0);
+        assertEquals(Arrays.asList("0+100", "0+100"), delegate.requested());
+        delegate.completeAll();
+    }
+
+    private static byte[] bytes(ByteBuf buf, int offset, int len) {
+        final byte[] bytes = new byte[len];
+        buf.getBytes(offset, bytes);
+        return bytes;
+    }
+
+    /**
+     * Serves {@link #OBJECT} once the test completes the reads, so that they are in flight meanwhile.
+     */
+    private static final class PendingReader implements AsyncByteReader {
+        private final List<String> requested = new ArrayList<>();
+        private final List<Runnable> pending = new ArrayList<>();
+
+        @Override
+        public synchronized CompletableFuture<Void> readFully(long offset, int len, ByteBuf dst, int dstOffset) {
+            requested.add(offset + "+" + len);
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            pending.add(() -> {
+                if (!future.isDone()) {
+                    dst.setBytes(dstOffset, OBJECT, (int) offset, len);
+                    future.complete(null);
+                }
+            });
+            return future;
+        }
+
+        synchronized List<String> requested() {
+            return new ArrayList<>(requested);
+        }
+
+        void completeAll() {
+            final List<Runnable> reads;
+            synchronized (this) {
+                reads = new ArrayList<>(pending);
+                pending.clear();
+            }
+            reads.forEach(Runnable::run);
+        }
+    }
+}
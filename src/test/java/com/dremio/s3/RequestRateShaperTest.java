@@ -0,0 +1,59 @@
+package com.dremio.s3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class RequestRateShaperTest {
+
+  @Test
+  public void throttleHalvesTheRate() {
+    final RequestRateShaper shaper = new RequestRateShaper(1000, 10);
+    shaper.onThrottle("bucket/a/");
+    assertEquals(500, shaper.currentRate("bucket/a/"), 1);
+    // further throttles of the same congestion event do not halve again
+    shaper.onThrottle("bucket/a/");
+    assertEquals(500, shaper.currentRate("bucket/a/"), 1);
+    // other prefixes keep their rate
+    assertEquals(1000, shaper.currentRate("bucket/b/"), 0);
+  }
+
+  @Test
+  public void throttleIsNotUndoneByConcurrentRequests() throws Exception {
+    final RequestRateShaper shaper = new RequestRateShaper(1e9, 1000);
+    final String key = "bucket/a/";
+    final AtomicBoolean stop = new AtomicBoolean();
+    final List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      final Thread thread = new Thread(() -> {
+        while (!stop.get()) {
+          shaper.acquire(key);
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    try {
+      for (int event = 0; event < 5; event++) {
+        final double before = shaper.currentRate(key);
+        shaper.onThrottle(key);
+        Thread.sleep(50);
+        // recovery is 5% of the maximum per second, far too little to make up the halving meanwhile
+        assertTrue("event " + event + ": " + shaper.currentRate(key) + " after " + before,
+          shaper.currentRate(key) < before * 0.6);
+        // past the window in which throttles count as the same congestion event
+        Thread.sleep(500);
+      }
+    } finally {
+      stop.set(true);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    }
+  }
+}
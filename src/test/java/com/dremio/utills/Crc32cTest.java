@@ -0,0 +1,60 @@
+package com.dremio.utills;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import org.junit.Test;
+
+import com.google.common.hash.Hashing;
+
+public class Crc32cTest {
+
+  @Test
+  public void knownValue() {
+    // check value of CRC-32C in the catalogue of parametrised CRC algorithms
+    assertEquals(0xE3069283L, crc("123456789".getBytes(StandardCharsets.US_ASCII), 0, 9));
+  }
+
+  @Test
+  public void matchesGuava() {
+    final byte[] bytes = randomBytes(100_000);
+    assertEquals(Integer.toUnsignedLong(Hashing.crc32c().hashBytes(bytes).asInt()), crc(bytes, 0, bytes.length));
+  }
+
+  @Test
+  public void combineMatchesTheChecksumOfTheWholeBuffer() {
+    final byte[] bytes = randomBytes(3 * 1024 * 1024 + 17);
+    final long whole = crc(bytes, 0, bytes.length);
+    for (int split : new int[] {0, 1, 7, 1024, 1024 * 1024, bytes.length - 1, bytes.length}) {
+      final long first = crc(bytes, 0, split);
+      final long second = crc(bytes, split, bytes.length - split);
+      assertEquals("split at " + split, whole, Crc32c.combine(first, second, bytes.length - split));
+    }
+  }
+
+  @Test
+  public void combineFoldsManyParts() {
+    final byte[] bytes = randomBytes(10 * 1000 + 3);
+    long combined = crc(bytes, 0, 0);
+    for (int offset = 0; offset < bytes.length; offset += 1000) {
+      final int len = Math.min(1000, bytes.length - offset);
+      combined = Crc32c.combine(combined, crc(bytes, offset, len), len);
+    }
+    assertEquals(crc(bytes, 0, bytes.length), combined);
+  }
+
+  private static long crc(byte[] bytes, int offset, int len) {
+    final Checksum checksum = Crc32c.newChecksum();
+    checksum.update(bytes, offset, len);
+    return checksum.getValue();
+  }
+
+  private static byte[] randomBytes(int len) {
+    final byte[] bytes = new byte[len];
+    new Random(42).nextBytes(bytes);
+    return bytes;
+  }
+}